@@ -0,0 +1,124 @@
+package com.billings.utils;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+//SQLStatementUtils prints and swallows database errors, so a failed statement completes its future normally with null
+//(or nothing for updates) exactly as the synchronous call would return, only errors outside it complete exceptionally
+public class AsyncSQLStatementUtils {
+
+	private static final ExecutorService executor = createExecutor();
+
+	//Tasks wait here without a thread until a permit is free, so the limit also bounds the number of threads in use
+	private static final Queue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();
+
+	private static volatile Semaphore concurrencyLimit = new Semaphore(20, true);
+
+	public static CompletableFuture<Void> executeUpdate(String query, Object... parameters) {
+		return submit(() -> {
+			SQLStatementUtils.executeUpdate(query, parameters);
+			return null;
+		});
+	}
+
+
+	public static CompletableFuture<List<?>> executeQuery(String query, Class<?> resultType, Object... parameters) {
+		return submit(() -> SQLStatementUtils.executeQuery(query, resultType, parameters));
+	}
+
+
+	public static CompletableFuture<Object> executeQueryForSingleRow(String query, Class<?> resultType, Object... parameters) {
+		return submit(() -> SQLStatementUtils.executeQueryForSingleRow(query, resultType, parameters));
+	}
+
+
+	public static CompletableFuture<Object> executeQueryForSingleCell(String query, Class<?> resultType, Object... parameters) {
+		return submit(() -> SQLStatementUtils.executeQueryForSingleCell(query, resultType, parameters));
+	}
+
+
+	public static CompletableFuture<Object[]> executeCallableStatement(String query, int[] outParameterIndexes, int[] outParameterTypes, Object[] parameters) {
+		return submit(() -> SQLStatementUtils.executeCallableStatement(query, outParameterIndexes, outParameterTypes, parameters));
+	}
+
+
+	public static void setMaxConcurrency(int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("Concurrency limit must be positive: " + maxConcurrency);
+		}
+
+		concurrencyLimit = new Semaphore(maxConcurrency, true);
+	}
+
+
+	private static <T> CompletableFuture<T> submit(Callable<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+
+		pending.add(() -> {
+			try {
+				future.complete(task.call());
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+		});
+
+		dispatch();
+
+		return future;
+	}
+
+
+	//Hands queued tasks to the executor while permits are free, each finished task frees its permit and dispatches again
+	private static void dispatch() {
+		while (!pending.isEmpty()) {
+			Semaphore limit = concurrencyLimit;
+
+			if (!limit.tryAcquire()) {
+				return;
+			}
+
+			Runnable task = pending.poll();
+
+			if (task == null) {
+				limit.release();
+				continue;
+			}
+
+			try {
+				executor.execute(() -> {
+					try {
+						task.run();
+					} finally {
+						limit.release();
+						dispatch();
+					}
+				});
+			} catch (RuntimeException e) {
+				limit.release();
+				throw e;
+			}
+		}
+	}
+
+
+	private static ExecutorService createExecutor() {
+		try {
+			//Virtual threads are only available from Java 21, so look the factory up rather than linking against it
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+
+		} catch (Exception e) {
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "AsyncSQLStatementUtils");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+}
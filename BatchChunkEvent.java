@@ -0,0 +1,70 @@
+package com.billings.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.billings.utils.BatchChunk")
+@Label("Batch Chunk")
+@Description("One executeBatch round trip of a batch update")
+@Enabled(false)
+@StackTrace(false)
+@Category({ "Billings Utils", "SQL" })
+class BatchChunkEvent extends jdk.jfr.Event {
+
+	private static final EventType type = EventType.getEventType(BatchChunkEvent.class);
+
+	@Label("SQL")
+	String sql;
+
+	@Label("First Row")
+	int firstRow;
+
+	@Label("Rows")
+	int rows;
+
+	@Label("Update Count")
+	long updateCount;
+
+	@Label("Failed")
+	boolean failed;
+
+	static BatchChunkEvent begin(String sql, int firstRow, int rows) {
+		if (!type.isEnabled()) {
+			return null;
+		}
+
+		BatchChunkEvent event = new BatchChunkEvent();
+		event.sql = sql;
+		event.firstRow = firstRow;
+		event.rows = rows;
+		event.begin();
+
+		return event;
+	}
+
+
+	//updateCounts is null when the chunk failed
+	static void end(BatchChunkEvent event, int[] updateCounts) {
+		if (event == null) {
+			return;
+		}
+
+		if (updateCounts == null) {
+			event.failed = true;
+		} else {
+			for (int count : updateCounts) {
+				if (count > 0) {
+					event.updateCount += count;
+				}
+			}
+		}
+
+		event.commit();
+	}
+
+}
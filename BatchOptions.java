@@ -0,0 +1,81 @@
+package com.billings.utils;
+
+public class BatchOptions {
+
+	private int chunkSize = 1000;
+	private int commitInterval = 1;
+	private boolean rollbackOnFailure = false;
+	private int partitions = 4;
+	private boolean allOrNothing = false;
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+
+	public BatchOptions setChunkSize(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+
+	public int getCommitInterval() {
+		return commitInterval;
+	}
+
+
+	//Number of chunks executed between commits, 0 commits once after the last chunk
+	public BatchOptions setCommitInterval(int commitInterval) {
+		if (commitInterval < 0) {
+			throw new IllegalArgumentException("Commit interval cannot be negative: " + commitInterval);
+		}
+
+		this.commitInterval = commitInterval;
+		return this;
+	}
+
+
+	public boolean isRollbackOnFailure() {
+		return rollbackOnFailure;
+	}
+
+
+	//Stops at the first failing chunk and rolls back everything not yet committed
+	public BatchOptions setRollbackOnFailure(boolean rollbackOnFailure) {
+		this.rollbackOnFailure = rollbackOnFailure;
+		return this;
+	}
+
+
+	public int getPartitions() {
+		return partitions;
+	}
+
+
+	//Number of connections a parallel batch is split across
+	public BatchOptions setPartitions(int partitions) {
+		if (partitions < 1) {
+			throw new IllegalArgumentException("Partition count must be positive: " + partitions);
+		}
+
+		this.partitions = partitions;
+		return this;
+	}
+
+
+	public boolean isAllOrNothing() {
+		return allOrNothing;
+	}
+
+
+	//Holds every partition's work uncommitted until all partitions succeed, then commits them together
+	public BatchOptions setAllOrNothing(boolean allOrNothing) {
+		this.allOrNothing = allOrNothing;
+		return this;
+	}
+
+}
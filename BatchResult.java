@@ -0,0 +1,146 @@
+package com.billings.utils;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BatchResult {
+
+	private final int[] updateCounts;
+	private final List<ChunkFailure> failures = new ArrayList<ChunkFailure>();
+	private int committedRowCount;
+	private int uncommittedFrom;
+	private boolean rolledBack;
+
+	public BatchResult(int rowCount) {
+		this.updateCounts = new int[rowCount];
+	}
+
+
+	void setUpdateCounts(int firstRow, int[] counts) {
+		System.arraycopy(counts, 0, updateCounts, firstRow, Math.min(counts.length, updateCounts.length - firstRow));
+	}
+
+
+	void addFailure(int rolledBackFrom, int chunkStart, int chunkEnd, Exception cause) {
+		Arrays.fill(updateCounts, rolledBackFrom, chunkEnd, Statement.EXECUTE_FAILED);
+
+		failures.add(new ChunkFailure(rolledBackFrom, chunkStart, chunkEnd, cause));
+	}
+
+
+	//Fails every row after the last commit, rows committed before it keep their update counts
+	void failUncommitted(Exception cause) {
+		addFailure(uncommittedFrom, uncommittedFrom, updateCounts.length, cause);
+	}
+
+
+	int getUncommittedFrom() {
+		return uncommittedFrom;
+	}
+
+
+	void setUncommittedFrom(int row) {
+		this.uncommittedFrom = row;
+	}
+
+
+	void markNotExecuted(int fromRow) {
+		Arrays.fill(updateCounts, fromRow, updateCounts.length, Statement.EXECUTE_FAILED);
+	}
+
+
+	void addCommittedRows(int rowCount) {
+		committedRowCount += rowCount;
+	}
+
+
+	void setRolledBack(boolean rolledBack) {
+		this.rolledBack = rolledBack;
+	}
+
+
+	void merge(BatchResult partition, int firstRow) {
+		System.arraycopy(partition.updateCounts, 0, updateCounts, firstRow, partition.updateCounts.length);
+
+		for (ChunkFailure failure : partition.failures) {
+			failures.add(new ChunkFailure(failure.rolledBackFrom + firstRow, failure.chunkStart + firstRow, failure.chunkEnd + firstRow, failure.cause));
+		}
+
+		committedRowCount += partition.committedRowCount;
+		rolledBack |= partition.rolledBack;
+	}
+
+
+	public int[] getUpdateCounts() {
+		return updateCounts;
+	}
+
+
+	public long getTotalUpdateCount() {
+		long total = 0;
+
+		for (int count : updateCounts) {
+			if (count > 0) {
+				total += count;
+			}
+		}
+
+		return total;
+	}
+
+
+	public int getCommittedRowCount() {
+		return committedRowCount;
+	}
+
+
+	public boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+
+
+	public List<ChunkFailure> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+
+
+	public boolean isRolledBack() {
+		return rolledBack;
+	}
+
+
+	public static class ChunkFailure {
+		private final int rolledBackFrom;
+		private final int chunkStart;
+		private final int chunkEnd;
+		private final Exception cause;
+
+		ChunkFailure(int rolledBackFrom, int chunkStart, int chunkEnd, Exception cause) {
+			this.rolledBackFrom = rolledBackFrom;
+			this.chunkStart = chunkStart;
+			this.chunkEnd = chunkEnd;
+			this.cause = cause;
+		}
+
+		//Index of the first row whose uncommitted work was rolled back because of this failure
+		public int getRolledBackFrom() {
+			return rolledBackFrom;
+		}
+
+		public int getChunkStart() {
+			return chunkStart;
+		}
+
+		public int getChunkEnd() {
+			return chunkEnd;
+		}
+
+		public Exception getCause() {
+			return cause;
+		}
+	}
+
+}
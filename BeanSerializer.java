@@ -0,0 +1,87 @@
+package com.billings.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BeanSerializer {
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+	private static final ClassValue<Map<List<String>, BeanSerializer>> serializers = new ClassValue<Map<List<String>, BeanSerializer>>() {
+		@Override
+		protected Map<List<String>, BeanSerializer> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<List<String>, BeanSerializer>();
+		}
+	};
+
+	private final String[] encodedKeys;
+	private final MethodHandle[] accessors;
+
+	private BeanSerializer(String[] encodedKeys, MethodHandle[] accessors) {
+		this.encodedKeys = encodedKeys;
+		this.accessors = accessors;
+	}
+
+
+	public static BeanSerializer forClass(Class<?> type, String... attributes) throws Exception {
+		Map<List<String>, BeanSerializer> typeSerializers = serializers.get(type);
+
+		List<String> key = Arrays.asList(attributes.clone());
+
+		BeanSerializer serializer = typeSerializers.get(key);
+
+		if (serializer == null) {
+			serializer = compile(type, attributes);
+
+			BeanSerializer existing = typeSerializers.putIfAbsent(key, serializer);
+
+			if (existing != null) {
+				serializer = existing;
+			}
+		}
+
+		return serializer;
+	}
+
+
+	private static BeanSerializer compile(Class<?> type, String[] attributes) throws Exception {
+		Method[] methods = Utils.getMethodsForAttributes(type, attributes);
+
+		String[] encodedKeys = new String[attributes.length];
+		MethodHandle[] accessors = new MethodHandle[attributes.length];
+
+		for (int i=0; i<attributes.length; i++) {
+			encodedKeys[i] = JSONWriter.encodeKey(attributes[i]);
+			accessors[i] = lookup.unreflect(methods[i]).asType(MethodType.methodType(Object.class, Object.class));
+		}
+
+		return new BeanSerializer(encodedKeys, accessors);
+	}
+
+
+	public void write(JSONWriter json, Object bean) throws Exception {
+		json.beginObject();
+
+		try {
+			for (int i=0; i<accessors.length; i++) {
+				Object value = accessors[i].invokeExact(bean);
+
+				json.writeEncodedField(encodedKeys[i], value);
+			}
+
+		} catch(Exception | Error e) {
+			throw e;
+		} catch(Throwable t) {
+			throw new Exception(t);
+		}
+
+		json.endObject();
+	}
+
+}
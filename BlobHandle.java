@@ -0,0 +1,317 @@
+package com.billings.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class BlobHandle implements AutoCloseable {
+
+	private static volatile int threshold = 1024 * 1024;
+
+	private final byte[] content;
+	private final int contentLength;
+	private final Path file;
+	private final Charset charset;
+	private FileChannel channel;
+	private ByteBuffer mapped;
+	private CharSequence text;
+	private boolean closed;
+
+	private BlobHandle(byte[] content, int contentLength, Path file, Charset charset) {
+		this.content = content;
+		this.contentLength = contentLength;
+		this.file = file;
+		this.charset = charset;
+	}
+
+
+	//Clamped so the in-memory buffer of threshold + 1 bytes stays a valid array size
+	public static void setThreshold(int bytes) {
+		threshold = Math.max(0, Math.min(bytes, Integer.MAX_VALUE - 9));
+	}
+
+
+	public static BlobHandle read(Blob blob) throws IOException, SQLException {
+		InputStream in = null;
+
+		try {
+			in = blob.getBinaryStream();
+
+			return read(in, StandardCharsets.UTF_8);
+		} finally {
+			Utils.closeAutoCloseables(in);
+			Streams.free(blob);
+		}
+	}
+
+
+	//Clob content is stored as UTF-8
+	public static BlobHandle read(Clob clob) throws IOException, SQLException {
+		Reader in = null;
+
+		try {
+			in = clob.getCharacterStream();
+
+			return read(new EncodingInputStream(in, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+		} finally {
+			Utils.closeAutoCloseables(in);
+			Streams.free(clob);
+		}
+	}
+
+
+	//Content up to the threshold stays on the heap, anything larger is spilled to a temp file
+	public static BlobHandle read(InputStream in, Charset charset) throws IOException {
+		int limit = threshold;
+		byte[] buffer = new byte[Math.min(limit + 1, 8192)];
+		int length = 0;
+
+		while (length <= limit) {
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, limit + 1));
+			}
+
+			int count = in.read(buffer, length, buffer.length - length);
+
+			if (count < 0) {
+				return new BlobHandle(buffer, length, null, charset);
+			}
+
+			length += count;
+		}
+
+		Path file = Files.createTempFile("blob", ".tmp");
+
+		try {
+			OutputStream out = Files.newOutputStream(file, StandardOpenOption.WRITE);
+
+			try {
+				out.write(buffer, 0, length);
+				Streams.transferTo(in, out);
+			} finally {
+				out.close();
+			}
+		} catch(IOException | RuntimeException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+
+		return new BlobHandle(null, 0, file, charset);
+	}
+
+
+	public boolean isSpilled() {
+		return file != null;
+	}
+
+
+	public long length() throws IOException {
+		checkOpen();
+
+		return file == null ? contentLength : Files.size(file);
+	}
+
+
+	public InputStream getInputStream() throws IOException {
+		checkOpen();
+
+		if (file == null) {
+			return new ByteArrayInputStream(content, 0, contentLength);
+		}
+
+		return Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ));
+	}
+
+
+	//Read-only view, spilled content is memory mapped rather than copied onto the heap.
+	//The mapping is released by the collector once no view of it is reachable, close() only deletes the file.
+	public synchronized ByteBuffer getByteBuffer() throws IOException {
+		checkOpen();
+
+		if (file == null) {
+			return ByteBuffer.wrap(content, 0, contentLength).slice().asReadOnlyBuffer();
+		}
+
+		if (mapped == null) {
+			long size = Files.size(file);
+
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(String.format("%d bytes is too large to map, use getInputStream", size));
+			}
+
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		return mapped.duplicate();
+	}
+
+
+	//Only for content held in memory, spilled content is too large to decode in one piece and is read with getReader
+	public synchronized CharSequence getCharSequence() throws IOException {
+		checkOpen();
+
+		if (file != null) {
+			throw new IOException("Blob content was spilled to disk, read it with getReader or getInputStream");
+		}
+
+		if (text == null) {
+			text = newDecoder().decode(ByteBuffer.wrap(content, 0, contentLength));
+		}
+
+		return text;
+	}
+
+
+	//Decodes incrementally, malformed input is replaced the same way getCharSequence does
+	public Reader getReader() throws IOException {
+		return new InputStreamReader(getInputStream(), newDecoder());
+	}
+
+
+	private CharsetDecoder newDecoder() {
+		return charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+
+	public long transferTo(OutputStream out) throws IOException {
+		InputStream in = getInputStream();
+
+		try {
+			return Streams.transferTo(in, out);
+		} finally {
+			in.close();
+		}
+	}
+
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Blob handle is closed");
+		}
+	}
+
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		text = null;
+
+		//Unmapping here would crash the JVM on a later read through a view getByteBuffer handed out
+		mapped = null;
+
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} finally {
+			if (file != null) {
+				deleteFile();
+			}
+		}
+	}
+
+
+	//A file that is still mapped cannot be deleted on Windows, it is then removed when the JVM exits
+	private void deleteFile() {
+		try {
+			Files.deleteIfExists(file);
+		} catch(IOException e) {
+			file.toFile().deleteOnExit();
+		}
+	}
+
+
+	//Encodes a character stream incrementally so a Clob can be spilled without being read into a String first
+	private static class EncodingInputStream extends InputStream {
+		private final Reader in;
+		private final CharsetEncoder encoder;
+		private final CharBuffer chars = CharBuffer.allocate(4096);
+		private final ByteBuffer bytes = ByteBuffer.allocate(4096 * 4);
+		private boolean endOfInput;
+
+		private EncodingInputStream(Reader in, Charset charset) {
+			this.in = in;
+			this.encoder = charset.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+			bytes.flip();
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+
+			return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			while (!bytes.hasRemaining()) {
+				if (endOfInput) {
+					return -1;
+				}
+
+				fill();
+			}
+
+			int count = Math.min(len, bytes.remaining());
+
+			bytes.get(b, off, count);
+
+			return count;
+		}
+
+		private void fill() throws IOException {
+			bytes.clear();
+
+			int count = in.read(chars);
+
+			if (count < 0) {
+				endOfInput = true;
+			}
+
+			chars.flip();
+			encoder.encode(chars, bytes, endOfInput);
+
+			if (endOfInput) {
+				encoder.flush(bytes);
+			}
+
+			chars.compact();
+			bytes.flip();
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.billings.utils;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.billings.utils.CallableStatement")
+@Label("Callable Statement")
+@Description("Stored procedure call executed through SQLStatementUtils")
+class CallableStatementEvent extends StatementEvent {
+
+	private static final EventType type = EventType.getEventType(CallableStatementEvent.class);
+
+	static CallableStatementEvent begin(String sql) {
+		if (!type.isEnabled()) {
+			return null;
+		}
+
+		CallableStatementEvent event = new CallableStatementEvent();
+		event.sql = sql;
+		event.begin();
+
+		return event;
+	}
+
+}
@@ -0,0 +1,368 @@
+package com.billings.utils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ColumnarResult {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final String[] columnNames;
+	private final Column[] columns;
+	private int rowCount;
+
+	private ColumnarResult(String[] columnNames, Column[] columns) {
+		this.columnNames = columnNames;
+		this.columns = columns;
+	}
+
+
+	public static ColumnarResult read(ResultSet rs) throws SQLException {
+		ResultSetMetaData rsmd = rs.getMetaData();
+
+		int columnCount = rsmd.getColumnCount();
+
+		String[] columnNames = new String[columnCount];
+		Column[] columns = new Column[columnCount];
+
+		for (int i=0; i<columnCount; i++) {
+			columnNames[i] = rsmd.getColumnLabel(i+1);
+			columns[i] = createColumn(rsmd, i+1);
+		}
+
+		ColumnarResult result = new ColumnarResult(columnNames, columns);
+
+		while (rs.next()) {
+			for (int i=0; i<columnCount; i++) {
+				columns[i].read(rs, i+1);
+			}
+
+			result.rowCount++;
+		}
+
+		return result;
+	}
+
+
+	private static Column createColumn(ResultSetMetaData rsmd, int column) throws SQLException {
+		switch (rsmd.getColumnType(column)) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return new IntColumn();
+			case Types.BIGINT:
+				return new LongColumn();
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return new DoubleColumn();
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				return createNumericColumn(rsmd.getPrecision(column), rsmd.getScale(column));
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+				return new StringColumn();
+			default:
+				return new ObjectColumn();
+		}
+	}
+
+
+	private static Column createNumericColumn(int precision, int scale) {
+		//Fractional and unbounded numerics are read as double, which trades exactness for unboxed storage
+		if (scale != 0 || precision <= 0) {
+			return new DoubleColumn();
+		} else if (precision <= 9) {
+			return new IntColumn();
+		} else if (precision <= 18) {
+			return new LongColumn();
+		} else {
+			return new ObjectColumn();
+		}
+	}
+
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+
+	public String getColumnName(int columnIndex) {
+		return columnNames[columnIndex];
+	}
+
+
+	public int indexOf(String columnName) {
+		for (int i=0; i<columnNames.length; i++) {
+			if (columnNames[i].equalsIgnoreCase(columnName)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+
+	public Column getColumn(int columnIndex) {
+		return columns[columnIndex];
+	}
+
+
+	public Column getColumn(String columnName) {
+		int index = indexOf(columnName);
+
+		if (index < 0) {
+			throw new IllegalArgumentException(String.format("No column named %s in result", columnName));
+		}
+
+		return columns[index];
+	}
+
+
+	public IntColumn getIntColumn(String columnName) {
+		return (IntColumn)getColumn(columnName);
+	}
+
+
+	public LongColumn getLongColumn(String columnName) {
+		return (LongColumn)getColumn(columnName);
+	}
+
+
+	public DoubleColumn getDoubleColumn(String columnName) {
+		return (DoubleColumn)getColumn(columnName);
+	}
+
+
+	public StringColumn getStringColumn(String columnName) {
+		return (StringColumn)getColumn(columnName);
+	}
+
+
+	public static abstract class Column {
+		private long[] nulls = new long[INITIAL_CAPACITY / 64];
+		protected int size;
+
+		public int size() {
+			return size;
+		}
+
+		public boolean isNull(int row) {
+			int word = row >>> 6;
+
+			return word < nulls.length && (nulls[word] & (1L << row)) != 0;
+		}
+
+		public abstract Object getObject(int row);
+
+		protected void markNull(int row) {
+			if (row >>> 6 >= nulls.length) {
+				nulls = Arrays.copyOf(nulls, Math.max(nulls.length * 2, (row >>> 6) + 1));
+			}
+
+			nulls[row >>> 6] |= 1L << row;
+		}
+
+		protected static int grow(int capacity) {
+			return capacity + (capacity >> 1);
+		}
+
+		abstract void read(ResultSet rs, int column) throws SQLException;
+	}
+
+
+	public static class IntColumn extends Column {
+		private int[] values = new int[INITIAL_CAPACITY];
+
+		public int getInt(int row) {
+			return values[row];
+		}
+
+		//Backing array, only the first size() entries are populated
+		public int[] getValues() {
+			return values;
+		}
+
+		@Override
+		public Object getObject(int row) {
+			return isNull(row) ? null : (Object)values[row];
+		}
+
+		@Override
+		void read(ResultSet rs, int column) throws SQLException {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+
+			values[size] = rs.getInt(column);
+
+			if (rs.wasNull()) {
+				markNull(size);
+			}
+
+			size++;
+		}
+	}
+
+
+	public static class LongColumn extends Column {
+		private long[] values = new long[INITIAL_CAPACITY];
+
+		public long getLong(int row) {
+			return values[row];
+		}
+
+		//Backing array, only the first size() entries are populated
+		public long[] getValues() {
+			return values;
+		}
+
+		@Override
+		public Object getObject(int row) {
+			return isNull(row) ? null : (Object)values[row];
+		}
+
+		@Override
+		void read(ResultSet rs, int column) throws SQLException {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+
+			values[size] = rs.getLong(column);
+
+			if (rs.wasNull()) {
+				markNull(size);
+			}
+
+			size++;
+		}
+	}
+
+
+	public static class DoubleColumn extends Column {
+		private double[] values = new double[INITIAL_CAPACITY];
+
+		public double getDouble(int row) {
+			return values[row];
+		}
+
+		//Backing array, only the first size() entries are populated
+		public double[] getValues() {
+			return values;
+		}
+
+		@Override
+		public Object getObject(int row) {
+			return isNull(row) ? null : (Object)values[row];
+		}
+
+		@Override
+		void read(ResultSet rs, int column) throws SQLException {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+
+			values[size] = rs.getDouble(column);
+
+			if (rs.wasNull()) {
+				markNull(size);
+			}
+
+			size++;
+		}
+	}
+
+
+	public static class StringColumn extends Column {
+		private int[] codes = new int[INITIAL_CAPACITY];
+		private final List<String> dictionary = new ArrayList<String>();
+		private final Map<String, Integer> dictionaryCodes = new HashMap<String, Integer>();
+
+		public String getString(int row) {
+			return isNull(row) ? null : dictionary.get(codes[row]);
+		}
+
+		//Dictionary code of the row's value, meaningless for null rows
+		public int getCode(int row) {
+			return codes[row];
+		}
+
+		public List<String> getDictionary() {
+			return Collections.unmodifiableList(dictionary);
+		}
+
+		@Override
+		public Object getObject(int row) {
+			return getString(row);
+		}
+
+		@Override
+		void read(ResultSet rs, int column) throws SQLException {
+			if (size == codes.length) {
+				codes = Arrays.copyOf(codes, grow(codes.length));
+			}
+
+			String value = rs.getString(column);
+
+			if (value == null) {
+				markNull(size);
+			} else {
+				Integer code = dictionaryCodes.get(value);
+
+				if (code == null) {
+					code = dictionary.size();
+
+					dictionary.add(value);
+					dictionaryCodes.put(value, code);
+				}
+
+				codes[size] = code;
+			}
+
+			size++;
+		}
+	}
+
+
+	public static class ObjectColumn extends Column {
+		private Object[] values = new Object[INITIAL_CAPACITY];
+
+		@Override
+		public Object getObject(int row) {
+			return values[row];
+		}
+
+		@Override
+		void read(ResultSet rs, int column) throws SQLException {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+
+			values[size] = rs.getObject(column);
+
+			if (values[size] == null) {
+				markNull(size);
+			}
+
+			size++;
+		}
+	}
+
+}
@@ -0,0 +1,475 @@
+package com.billings.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConnectionPool {
+
+	private static final long VALIDATION_BYPASS_MILLIS = 500;
+	private static final long HOUSEKEEPING_INTERVAL_MILLIS = 30000;
+
+	private static final ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "ConnectionPool-housekeeper");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static volatile ConnectionPool defaultPool;
+
+	private final ConnectionFactory factory;
+	private final int minSize;
+	private final int maxSize;
+
+	private volatile long maxWaitMillis = 30000;
+	private volatile long idleTimeoutMillis = 600000;
+	private volatile long leakThresholdMillis = 0;
+	private volatile int validationTimeoutSeconds = 5;
+	private volatile int statementCacheSize = 256;
+
+	private final Semaphore permits;
+	private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<PooledConnection>();
+	private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger totalCount = new AtomicInteger();
+	private final LongAdder statementCacheHits = new LongAdder();
+	private final LongAdder statementCacheMisses = new LongAdder();
+	private final LongAdder statementCacheEvictions = new LongAdder();
+	private final ScheduledFuture<?> housekeeping;
+
+	private volatile boolean shutdown;
+
+	public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize) {
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+			throw new IllegalArgumentException(String.format("Invalid pool size min=%d max=%d", minSize, maxSize));
+		}
+
+		this.factory = factory;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.permits = new Semaphore(maxSize, true);
+
+		this.housekeeping = housekeeper.scheduleWithFixedDelay(this::houseKeep, 0, HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+
+	public static ConnectionPool getDefault() {
+		ConnectionPool pool = defaultPool;
+
+		if (pool == null) {
+			synchronized (ConnectionPool.class) {
+				if (defaultPool == null) {
+					defaultPool = new ConnectionPool(DatabaseUtils::getConnection, 2, 20);
+				}
+
+				pool = defaultPool;
+			}
+		}
+
+		return pool;
+	}
+
+
+	public static void setDefault(ConnectionPool pool) {
+		ConnectionPool previous;
+
+		synchronized (ConnectionPool.class) {
+			previous = defaultPool;
+			defaultPool = pool;
+		}
+
+		if (previous != null && previous != pool) {
+			previous.shutdown();
+		}
+	}
+
+
+	public static Connection getPooledConnection() throws Exception {
+		return getDefault().getConnection();
+	}
+
+
+	public Connection getConnection() throws Exception {
+		if (shutdown) {
+			throw new SQLException("Connection pool has been shut down");
+		}
+
+		if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+			throw new SQLException(String.format("Timed out after %dms waiting for a connection (active=%d, max=%d)",
+					maxWaitMillis, borrowed.size(), maxSize));
+		}
+
+		try {
+			PooledConnection pooled = takeIdle();
+
+			if (pooled == null) {
+				pooled = create();
+			}
+
+			return lease(pooled);
+
+		} catch (Exception | Error e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+
+	private PooledConnection takeIdle() {
+		PooledConnection pooled;
+
+		while ((pooled = idle.pollFirst()) != null) {
+			if (isUsable(pooled)) {
+				return pooled;
+			}
+
+			destroy(pooled);
+		}
+
+		return null;
+	}
+
+
+	private boolean isUsable(PooledConnection pooled) {
+		if (System.currentTimeMillis() - pooled.lastUsed < VALIDATION_BYPASS_MILLIS) {
+			return true;
+		}
+
+		try {
+			return pooled.connection.isValid(validationTimeoutSeconds);
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+
+	private PooledConnection create() throws Exception {
+		Connection connection = factory.create();
+
+		totalCount.incrementAndGet();
+
+		StatementCache statementCache = null;
+
+		if (statementCacheSize > 0) {
+			statementCache = new StatementCache(connection, statementCacheSize, statementCacheHits, statementCacheMisses, statementCacheEvictions);
+		}
+
+		return new PooledConnection(connection, connection.getAutoCommit(), statementCache);
+	}
+
+
+	private Connection lease(PooledConnection pooled) {
+		pooled.borrowedAt = System.currentTimeMillis();
+		pooled.borrowTrace = leakThresholdMillis > 0 ? new Exception("Connection borrowed here") : null;
+		pooled.leakReported = false;
+
+		borrowed.add(pooled);
+
+		Lease lease = new Lease(pooled);
+
+		return (Connection)Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{ Connection.class }, lease);
+	}
+
+
+	private void release(PooledConnection pooled) {
+		borrowed.remove(pooled);
+
+		pooled.lastUsed = System.currentTimeMillis();
+		pooled.borrowTrace = null;
+
+		if (pooled.statementCache != null) {
+			pooled.statementCache.releaseAll();
+		}
+
+		if (shutdown || totalCount.get() > maxSize || !reset(pooled)) {
+			destroy(pooled);
+		} else {
+			idle.offerFirst(pooled);
+		}
+
+		permits.release();
+	}
+
+
+	private boolean reset(PooledConnection pooled) {
+		try {
+			Connection connection = pooled.connection;
+
+			if (connection.isClosed()) {
+				return false;
+			}
+
+			if (!connection.getAutoCommit()) {
+				connection.rollback();
+			}
+
+			if (connection.getAutoCommit() != pooled.initialAutoCommit) {
+				connection.setAutoCommit(pooled.initialAutoCommit);
+			}
+
+			connection.clearWarnings();
+
+			return true;
+
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+
+	private void destroy(PooledConnection pooled) {
+		totalCount.decrementAndGet();
+
+		if (pooled.statementCache != null) {
+			pooled.statementCache.close();
+		}
+
+		Utils.closeAutoCloseables(pooled.connection);
+	}
+
+
+	private void houseKeep() {
+		try {
+			evictIdle();
+			reportLeaks();
+			fillToMinimum();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+
+	private void evictIdle() {
+		long now = System.currentTimeMillis();
+
+		for (PooledConnection pooled : idle) {
+			if (totalCount.get() <= minSize) {
+				break;
+			}
+
+			if (now - pooled.lastUsed > idleTimeoutMillis && idle.removeLastOccurrence(pooled)) {
+				destroy(pooled);
+			}
+		}
+	}
+
+
+	private void reportLeaks() {
+		long threshold = leakThresholdMillis;
+
+		if (threshold <= 0) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+
+		for (PooledConnection pooled : borrowed) {
+			Exception trace = pooled.borrowTrace;
+
+			if (!pooled.leakReported && trace != null && now - pooled.borrowedAt > threshold) {
+				pooled.leakReported = true;
+
+				System.out.println(String.format("Possible connection leak: connection held for %dms", now - pooled.borrowedAt));
+				trace.printStackTrace();
+			}
+		}
+	}
+
+
+	private void fillToMinimum() throws Exception {
+		while (!shutdown && totalCount.get() < minSize) {
+			PooledConnection pooled = create();
+			pooled.lastUsed = System.currentTimeMillis();
+
+			idle.offerLast(pooled);
+		}
+	}
+
+
+	public void shutdown() {
+		shutdown = true;
+		housekeeping.cancel(false);
+
+		PooledConnection pooled;
+
+		while ((pooled = idle.pollFirst()) != null) {
+			destroy(pooled);
+		}
+	}
+
+
+	public int getActiveCount() {
+		return borrowed.size();
+	}
+
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+
+	public int getTotalCount() {
+		return totalCount.get();
+	}
+
+
+	public long getStatementCacheHits() {
+		return statementCacheHits.sum();
+	}
+
+
+	public long getStatementCacheMisses() {
+		return statementCacheMisses.sum();
+	}
+
+
+	public long getStatementCacheEvictions() {
+		return statementCacheEvictions.sum();
+	}
+
+
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+
+	public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+
+	//Off by default because every borrow then captures a stack trace, enable it while hunting a leak
+	public void setLeakThresholdMillis(long leakThresholdMillis) {
+		this.leakThresholdMillis = leakThresholdMillis;
+	}
+
+
+	public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+	}
+
+
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+
+	@FunctionalInterface
+	public interface ConnectionFactory {
+		Connection create() throws Exception;
+	}
+
+
+	//Wraps a statement or metadata object so getConnection returns the pooled connection, closing that returns it to the pool
+	static Object bindOwner(Object target, Class<?> type, Connection owner) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			String name = method.getName();
+
+			if (name.equals("getConnection") && method.getParameterCount() == 0) {
+				return owner;
+			} else if (name.equals("equals")) {
+				return proxy == args[0];
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		};
+
+		return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{ type }, handler);
+	}
+
+
+	private static class PooledConnection {
+		private final Connection connection;
+		private final boolean initialAutoCommit;
+		private final StatementCache statementCache;
+
+		private volatile long lastUsed;
+		private volatile long borrowedAt;
+		private volatile Exception borrowTrace;
+		private volatile boolean leakReported;
+
+		private PooledConnection(Connection connection, boolean initialAutoCommit, StatementCache statementCache) {
+			this.connection = connection;
+			this.initialAutoCommit = initialAutoCommit;
+			this.statementCache = statementCache;
+		}
+	}
+
+
+	private class Lease implements InvocationHandler {
+		private final PooledConnection pooled;
+		private volatile boolean closed;
+
+		private Lease(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if (name.equals("close")) {
+				close();
+				return null;
+			} else if (name.equals("isClosed")) {
+				return closed || pooled.connection.isClosed();
+			} else if (name.equals("equals")) {
+				return proxy == args[0];
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			} else if (name.equals("toString")) {
+				return "Pooled " + pooled.connection;
+			} else if (closed) {
+				throw new SQLException("Connection has already been returned to the pool");
+			} else if (pooled.statementCache != null && args != null && args.length == 1) {
+				if (name.equals("prepareStatement")) {
+					return pooled.statementCache.prepare(StatementCache.Kind.PREPARED, (String)args[0], (Connection)proxy);
+				} else if (name.equals("prepareCall")) {
+					return pooled.statementCache.prepare(StatementCache.Kind.CALLABLE, (String)args[0], (Connection)proxy);
+				}
+			}
+
+			Object result;
+
+			try {
+				result = method.invoke(pooled.connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			if (result instanceof Statement || result instanceof DatabaseMetaData) {
+				return bindOwner(result, method.getReturnType(), (Connection)proxy);
+			}
+
+			return result;
+		}
+
+		private synchronized void close() {
+			if (!closed) {
+				closed = true;
+				release(pooled);
+			}
+		}
+	}
+
+}
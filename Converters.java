@@ -0,0 +1,333 @@
+package com.billings.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Converters {
+
+	private static final Converter IDENTITY = value -> value;
+
+	private static final Map<Class<?>, Class<?>> wrappers = new HashMap<Class<?>, Class<?>>();
+
+	static {
+		wrappers.put(int.class, Integer.class);
+		wrappers.put(long.class, Long.class);
+		wrappers.put(double.class, Double.class);
+		wrappers.put(float.class, Float.class);
+		wrappers.put(short.class, Short.class);
+		wrappers.put(byte.class, Byte.class);
+		wrappers.put(boolean.class, Boolean.class);
+		wrappers.put(char.class, Character.class);
+	}
+
+	private static final DateTimeFormatter DATE_TO_STRING = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+
+	private static final Map<ConverterKey, Converter> registered = new ConcurrentHashMap<ConverterKey, Converter>();
+
+	private static volatile ClassValue<Map<Class<?>, Converter>> resolved = newResolvedCache();
+
+	public static Object convert(Object value, Class<?> targetType) {
+		if (value == null) {
+			return null;
+		}
+
+		return resolve(value.getClass(), targetType).convert(value);
+	}
+
+
+	public static Converter resolve(Class<?> sourceType, Class<?> targetType) {
+		Map<Class<?>, Converter> converters = resolved.get(sourceType);
+
+		Converter converter = converters.get(targetType);
+
+		if (converter == null) {
+			converter = createConverter(sourceType, targetType);
+
+			converters.put(targetType, converter);
+		}
+
+		return converter;
+	}
+
+
+	@SuppressWarnings("unchecked")
+	public static <S, T> void register(Class<S> sourceType, Class<T> targetType, TypedConverter<? super S, ? extends T> converter) {
+		registered.put(new ConverterKey(sourceType, targetType), value -> converter.convert((S)value));
+
+		resolved = newResolvedCache();
+	}
+
+
+	private static ClassValue<Map<Class<?>, Converter>> newResolvedCache() {
+		return new ClassValue<Map<Class<?>, Converter>>() {
+			@Override
+			protected Map<Class<?>, Converter> computeValue(Class<?> type) {
+				return new ConcurrentHashMap<Class<?>, Converter>();
+			}
+		};
+	}
+
+
+	private static Converter createConverter(Class<?> sourceType, Class<?> targetType) {
+		Converter custom = findRegistered(sourceType, targetType);
+
+		if (custom != null) {
+			return custom;
+		}
+
+		Class<?> target = wrappers.containsKey(targetType) ? wrappers.get(targetType) : targetType;
+
+		if (target.isAssignableFrom(sourceType)) {
+			return IDENTITY;
+		} else if (target == String.class) {
+			return Object::toString;
+		} else if (Number.class.isAssignableFrom(sourceType)) {
+			return fromNumber(sourceType, target);
+		} else if (sourceType == String.class) {
+			return fromString(target);
+		} else if (java.util.Date.class.isAssignableFrom(sourceType)) {
+			return fromDate(target);
+		} else if (sourceType == LocalDateTime.class && target == Timestamp.class) {
+			return value -> Timestamp.valueOf((LocalDateTime)value);
+		} else if (sourceType == LocalDate.class && target == java.sql.Date.class) {
+			return value -> java.sql.Date.valueOf((LocalDate)value);
+		}
+
+		return viaString(target);
+	}
+
+
+	private static Converter findRegistered(Class<?> sourceType, Class<?> targetType) {
+		Converter exact = registered.get(new ConverterKey(sourceType, targetType));
+
+		if (exact != null) {
+			return exact;
+		}
+
+		for (Map.Entry<ConverterKey, Converter> entry : registered.entrySet()) {
+			ConverterKey key = entry.getKey();
+
+			if (key.targetType == targetType && key.sourceType.isAssignableFrom(sourceType)) {
+				return entry.getValue();
+			}
+		}
+
+		return null;
+	}
+
+
+	//Narrowing conversions are exact, a value that is out of range or has a fraction throws ArithmeticException
+	private static Converter fromNumber(Class<?> sourceType, Class<?> target) {
+		boolean integral = isIntegral(sourceType);
+
+		if (target == Integer.class) {
+			if (integral) {
+				return value -> Math.toIntExact(((Number)value).longValue());
+			}
+
+			return value -> exactDecimal(value).intValueExact();
+		} else if (target == Long.class) {
+			if (integral) {
+				return value -> ((Number)value).longValue();
+			}
+
+			return value -> exactDecimal(value).longValueExact();
+		} else if (target == Double.class) {
+			//Widening the float itself would turn 0.1f into 0.10000000149011612
+			if (sourceType == Float.class) {
+				return value -> Double.parseDouble(value.toString());
+			}
+
+			return value -> ((Number)value).doubleValue();
+		} else if (target == Float.class) {
+			return value -> ((Number)value).floatValue();
+		} else if (target == Short.class) {
+			if (integral) {
+				return value -> {
+					long number = ((Number)value).longValue();
+
+					if (number != (short)number) {
+						throw new ArithmeticException("Overflow converting " + value + " to Short");
+					}
+
+					return (short)number;
+				};
+			}
+
+			return value -> exactDecimal(value).shortValueExact();
+		} else if (target == Byte.class) {
+			if (integral) {
+				return value -> {
+					long number = ((Number)value).longValue();
+
+					if (number != (byte)number) {
+						throw new ArithmeticException("Overflow converting " + value + " to Byte");
+					}
+
+					return (byte)number;
+				};
+			}
+
+			return value -> exactDecimal(value).byteValueExact();
+		} else if (target == Boolean.class) {
+			return value -> ((Number)value).doubleValue() != 0;
+		} else if (target == BigDecimal.class) {
+			if (integral) {
+				return value -> BigDecimal.valueOf(((Number)value).longValue());
+			}
+
+			return value -> exactDecimal(value);
+		}
+
+		return viaString(target);
+	}
+
+
+	private static boolean isIntegral(Class<?> sourceType) {
+		return sourceType == Integer.class || sourceType == Long.class || sourceType == Short.class || sourceType == Byte.class
+			|| sourceType == AtomicInteger.class || sourceType == AtomicLong.class;
+	}
+
+
+	//Float and Double go through their shortest decimal form so 0.1f stays 0.1 instead of widening to 0.100000001490116...
+	private static BigDecimal exactDecimal(Object value) {
+		if (value instanceof BigDecimal) {
+			return (BigDecimal)value;
+		} else if (value instanceof BigInteger) {
+			return new BigDecimal((BigInteger)value);
+		}
+
+		return new BigDecimal(value.toString());
+	}
+
+
+	private static Converter fromString(Class<?> target) {
+		if (target == Integer.class) {
+			return value -> Integer.parseInt((String)value);
+		} else if (target == Long.class) {
+			return value -> Long.parseLong((String)value);
+		} else if (target == Double.class) {
+			return value -> Double.parseDouble((String)value);
+		} else if (target == Float.class) {
+			return value -> Float.parseFloat((String)value);
+		} else if (target == Short.class) {
+			return value -> Short.parseShort((String)value);
+		} else if (target == Byte.class) {
+			return value -> Byte.parseByte((String)value);
+		} else if (target == Boolean.class) {
+			return value -> Boolean.valueOf((String)value);
+		} else if (target == Character.class) {
+			return value -> ((String)value).charAt(0);
+		} else if (target == BigDecimal.class) {
+			return value -> new BigDecimal((String)value);
+		} else if (target == Timestamp.class) {
+			return value -> Timestamp.valueOf((String)value);
+		} else if (target == java.sql.Date.class) {
+			return value -> java.sql.Date.valueOf((String)value);
+		} else if (target == java.util.Date.class) {
+			return value -> parseDate((String)value);
+		}
+
+		return IDENTITY;
+	}
+
+
+	//JDBC timestamp and date text, ISO-8601 instants, RFC 1123 dates and the java.util.Date toString form
+	private static java.util.Date parseDate(String value) {
+		String text = value.trim();
+
+		if (text.length() > 4 && text.charAt(4) == '-') {
+			if (text.length() == 10) {
+				return new java.util.Date(java.sql.Date.valueOf(text).getTime());
+			} else if (text.indexOf('T') > 0) {
+				return java.util.Date.from(OffsetDateTime.parse(text).toInstant());
+			}
+
+			return new java.util.Date(Timestamp.valueOf(text).getTime());
+		} else if (text.indexOf(',') > 0) {
+			return java.util.Date.from(ZonedDateTime.parse(text, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+		}
+
+		return java.util.Date.from(ZonedDateTime.parse(text, DATE_TO_STRING).toInstant());
+	}
+
+
+	private static Converter fromDate(Class<?> target) {
+		if (target == Timestamp.class) {
+			return value -> new Timestamp(((java.util.Date)value).getTime());
+		} else if (target == java.sql.Date.class) {
+			return value -> new java.sql.Date(((java.util.Date)value).getTime());
+		} else if (target == Long.class) {
+			return value -> ((java.util.Date)value).getTime();
+		} else if (target == LocalDateTime.class) {
+			return value -> new Timestamp(((java.util.Date)value).getTime()).toLocalDateTime();
+		} else if (target == LocalDate.class) {
+			return value -> new java.sql.Date(((java.util.Date)value).getTime()).toLocalDate();
+		}
+
+		return viaString(target);
+	}
+
+
+	private static Converter viaString(Class<?> target) {
+		Converter parser = fromString(target);
+
+		if (parser == IDENTITY) {
+			return IDENTITY;
+		}
+
+		return value -> parser.convert(value.toString());
+	}
+
+
+	@FunctionalInterface
+	public interface Converter {
+		Object convert(Object value);
+	}
+
+
+	@FunctionalInterface
+	public interface TypedConverter<S, T> {
+		T convert(S value);
+	}
+
+
+	private static class ConverterKey {
+		private final Class<?> sourceType;
+		private final Class<?> targetType;
+
+		private ConverterKey(Class<?> sourceType, Class<?> targetType) {
+			this.sourceType = sourceType;
+			this.targetType = targetType;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ConverterKey)) {
+				return false;
+			}
+
+			ConverterKey other = (ConverterKey)obj;
+
+			return sourceType == other.sourceType && targetType == other.targetType;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * sourceType.hashCode() + targetType.hashCode();
+		}
+	}
+
+}
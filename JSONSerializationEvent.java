@@ -0,0 +1,46 @@
+package com.billings.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.billings.utils.JSONSerialization")
+@Label("JSON Serialization")
+@Description("Document written through JSONWriter or Utils.printJSON")
+@Enabled(false)
+@StackTrace(false)
+@Category({ "Billings Utils", "JSON" })
+class JSONSerializationEvent extends jdk.jfr.Event {
+
+	private static final EventType type = EventType.getEventType(JSONSerializationEvent.class);
+
+	@Label("Content")
+	String content;
+
+	@Label("Records")
+	long records;
+
+	@Label("Characters")
+	long characters;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	static JSONSerializationEvent start() {
+		if (!type.isEnabled()) {
+			return null;
+		}
+
+		JSONSerializationEvent event = new JSONSerializationEvent();
+		event.begin();
+
+		return event;
+	}
+
+}
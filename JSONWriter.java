@@ -0,0 +1,416 @@
+package com.billings.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+public class JSONWriter implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_DEPTH = 64;
+
+	//Replacement text for each Latin-1 character, null when the character is written as is
+	private static final String[] ESCAPES = buildEscapes();
+
+	private static final ArrayBlockingQueue<byte[]> bytePool = new ArrayBlockingQueue<byte[]>(64);
+
+	private final Writer out;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+
+	private final ByteTarget target;
+	private OutputStream byteOut;
+	private byte[] bytes;
+
+	private final boolean[] hasEntries = new boolean[MAX_DEPTH];
+	private int depth;
+
+	private JSONSerializationEvent event = JSONSerializationEvent.start();
+	private long characterCount;
+	private long byteCount;
+
+	private boolean aborted;
+
+	public JSONWriter(Writer out) {
+		this.out = out;
+		this.target = null;
+	}
+
+
+	public JSONWriter(OutputStream out) {
+		this(contentLength -> out);
+	}
+
+
+	//Writes UTF-8 bytes, the target is opened on the first flush with the content length if the whole document is buffered by then
+	public JSONWriter(ByteTarget target) {
+		this.out = null;
+		this.target = target;
+	}
+
+
+	private static String[] buildEscapes() {
+		String[] escapes = new String[256];
+
+		//Control characters are what broke JSON.parse, Latin-1 letters are valid JSON and go out as UTF-8
+		for (int c=0; c<0x20; c++) {
+			escapes[c] = String.format("\\u%04x", c);
+		}
+
+		escapes['"'] = "\\\"";
+		escapes['\\'] = "\\\\";
+		escapes['\b'] = "\\b";
+		escapes['\f'] = "\\f";
+		escapes['\n'] = "\\n";
+		escapes['\r'] = "\\r";
+		escapes['\t'] = "\\t";
+
+		return escapes;
+	}
+
+
+	public JSONWriter beginArray() throws IOException {
+		beforeValue(",");
+		return open('[');
+	}
+
+
+	public JSONWriter endArray() throws IOException {
+		return close(']');
+	}
+
+
+	public JSONWriter beginObject() throws IOException {
+		beforeValue(",");
+		return open('{');
+	}
+
+
+	public JSONWriter endObject() throws IOException {
+		return close('}');
+	}
+
+
+	public JSONWriter writeField(String key, Object value) throws IOException {
+		beforeValue(", ");
+
+		write('"');
+		writeEscaped(key);
+		write("\": ");
+		writeValue(value);
+
+		return this;
+	}
+
+
+	//encodedKey must come from encodeKey, it is written without further escaping
+	public JSONWriter writeEncodedField(String encodedKey, Object value) throws IOException {
+		beforeValue(", ");
+
+		write(encodedKey);
+		writeValue(value);
+
+		return this;
+	}
+
+
+	public static String encodeKey(String key) throws IOException {
+		StringWriter encoded = new StringWriter(key.length() + 4);
+
+		JSONWriter json = new JSONWriter(encoded);
+		json.event = null;
+
+		json.write('"');
+		json.writeEscaped(key);
+		json.write("\": ");
+		json.flushBuffer();
+
+		return encoded.toString();
+	}
+
+
+	public JSONWriter writeNull() throws IOException {
+		beforeValue(",");
+		write("null");
+
+		return this;
+	}
+
+
+	private void writeValue(Object value) throws IOException {
+		if (value == null) {
+			write("null");
+		} else if (value instanceof Boolean) {
+			write(value.toString());
+		} else if (value instanceof Number) {
+			writeNumber((Number)value);
+		} else {
+			write('"');
+			writeEscaped((String) Utils.cast(value, String.class));
+			write('"');
+		}
+	}
+
+
+	private void writeNumber(Number value) throws IOException {
+		if (value instanceof Double || value instanceof Float) {
+			double number = value.doubleValue();
+
+			if (Double.isNaN(number) || Double.isInfinite(number)) {
+				write("null");
+				return;
+			}
+		}
+
+		write(value.toString());
+	}
+
+
+	private void writeEscaped(String value) throws IOException {
+		int length = value.length();
+		int start = 0;
+
+		for (int i=0; i<length; i++) {
+			char c = value.charAt(i);
+
+			if (c < ESCAPES.length && ESCAPES[c] != null) {
+				write(value, start, i);
+				write(ESCAPES[c]);
+
+				start = i + 1;
+			}
+		}
+
+		write(value, start, length);
+	}
+
+
+	private JSONWriter open(char bracket) throws IOException {
+		if (depth == MAX_DEPTH) {
+			throw new IOException("JSON nesting exceeds " + MAX_DEPTH + " levels");
+		}
+
+		write(bracket);
+		hasEntries[depth++] = false;
+
+		return this;
+	}
+
+
+	private JSONWriter close(char bracket) throws IOException {
+		depth--;
+		write(bracket);
+
+		return this;
+	}
+
+
+	private void beforeValue(String separator) throws IOException {
+		if (depth > 0) {
+			if (hasEntries[depth-1]) {
+				write(separator);
+			}
+
+			hasEntries[depth-1] = true;
+		}
+	}
+
+
+	private void write(char c) throws IOException {
+		if (position == buffer.length) {
+			flushBuffer();
+		}
+
+		buffer[position++] = c;
+	}
+
+
+	private void write(String str) throws IOException {
+		write(str, 0, str.length());
+	}
+
+
+	private void write(String str, int start, int end) throws IOException {
+		int offset = start;
+
+		while (offset < end) {
+			if (position == buffer.length) {
+				flushBuffer();
+			}
+
+			int count = Math.min(end - offset, buffer.length - position);
+
+			str.getChars(offset, offset + count, buffer, position);
+
+			position += count;
+			offset += count;
+		}
+	}
+
+
+	void endLine() throws IOException {
+		write('\n');
+	}
+
+
+	//Labels the flight recorder event for this document, if one is being recorded
+	void describe(String content, long records) {
+		if (event != null) {
+			event.content = content;
+			event.records = records;
+		}
+	}
+
+
+	void describe(String container, Class<?> type, long records) {
+		if (event != null) {
+			describe(container + "<" + type.getName() + ">", records);
+		}
+	}
+
+
+	private void flushBuffer() throws IOException {
+		if (out != null) {
+			out.write(buffer, 0, position);
+			characterCount += position;
+			position = 0;
+		} else {
+			writeBytes(false);
+		}
+	}
+
+
+	private void writeBytes(boolean last) throws IOException {
+		int end = position;
+
+		//Hold back a trailing high surrogate so the pair is encoded together on the next flush
+		if (!last && end > 0 && Character.isHighSurrogate(buffer[end-1])) {
+			end--;
+		}
+
+		int length = encodeUTF8(end);
+
+		if (byteOut == null) {
+			byteOut = target.open(last ? length : -1);
+		}
+
+		byteOut.write(bytes, 0, length);
+
+		characterCount += end;
+		byteCount += length;
+
+		if (end < position) {
+			buffer[0] = buffer[end];
+			position = 1;
+		} else {
+			position = 0;
+		}
+	}
+
+
+	private int encodeUTF8(int end) {
+		if (bytes == null) {
+			bytes = bytePool.poll();
+
+			if (bytes == null) {
+				bytes = new byte[BUFFER_SIZE * 3];
+			}
+		}
+
+		byte[] dest = bytes;
+		int length = 0;
+
+		for (int i=0; i<end; i++) {
+			char c = buffer[i];
+
+			if (c < 0x80) {
+				dest[length++] = (byte)c;
+			} else if (c < 0x800) {
+				dest[length++] = (byte)(0xC0 | (c >> 6));
+				dest[length++] = (byte)(0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(buffer[i+1])) {
+				int codePoint = Character.toCodePoint(c, buffer[++i]);
+
+				dest[length++] = (byte)(0xF0 | (codePoint >> 18));
+				dest[length++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+				dest[length++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+				dest[length++] = (byte)(0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				dest[length++] = '?';
+			} else {
+				dest[length++] = (byte)(0xE0 | (c >> 12));
+				dest[length++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+				dest[length++] = (byte)(0x80 | (c & 0x3F));
+			}
+		}
+
+		return length;
+	}
+
+
+	public void flush() throws IOException {
+		flushBuffer();
+
+		if (out != null) {
+			out.flush();
+		} else {
+			byteOut.flush();
+		}
+
+		commitEvent();
+	}
+
+
+	//Drops whatever is still buffered so close() does not send a truncated document, in byte mode nothing reaches the target if it was never opened
+	public void abort() {
+		aborted = true;
+		position = 0;
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (aborted) {
+				if (out != null) {
+					out.close();
+				} else if (byteOut != null) {
+					byteOut.close();
+				}
+			} else if (out != null) {
+				flushBuffer();
+				out.close();
+			} else {
+				writeBytes(true);
+				byteOut.close();
+			}
+		} finally {
+			if (bytes != null) {
+				bytePool.offer(bytes);
+				bytes = null;
+			}
+
+			commitEvent();
+		}
+	}
+
+
+	private void commitEvent() {
+		if (event != null) {
+			event.characters = characterCount;
+			event.bytes = byteCount;
+			event.commit();
+
+			event = null;
+		}
+	}
+
+
+	@FunctionalInterface
+	public interface ByteTarget {
+		OutputStream open(int contentLength) throws IOException;
+	}
+
+}
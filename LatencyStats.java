@@ -0,0 +1,58 @@
+package com.billings.utils;
+
+public class LatencyStats {
+
+	private final long count;
+	private final double totalMillis;
+	private final double meanMillis;
+	private final double p50Millis;
+	private final double p95Millis;
+	private final double p99Millis;
+	private final double maxMillis;
+
+	LatencyStats(long count, double totalMillis, double meanMillis, double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+		this.count = count;
+		this.totalMillis = totalMillis;
+		this.meanMillis = meanMillis;
+		this.p50Millis = p50Millis;
+		this.p95Millis = p95Millis;
+		this.p99Millis = p99Millis;
+		this.maxMillis = maxMillis;
+	}
+
+
+	public long getCount() {
+		return count;
+	}
+
+
+	public double getTotalMillis() {
+		return totalMillis;
+	}
+
+
+	public double getMeanMillis() {
+		return meanMillis;
+	}
+
+
+	public double getP50Millis() {
+		return p50Millis;
+	}
+
+
+	public double getP95Millis() {
+		return p95Millis;
+	}
+
+
+	public double getP99Millis() {
+		return p99Millis;
+	}
+
+
+	public double getMaxMillis() {
+		return maxMillis;
+	}
+
+}
@@ -0,0 +1,218 @@
+package com.billings.utils;
+
+import java.sql.CallableStatement;
+import java.util.Arrays;
+
+//The parameter layout of a stored procedure call, worked out once and shared by every execution.
+//Executions go through SQLStatementUtils.executeProcedure, the handle holds no statement of its own. The prepared call is reused
+//per connection by the statement cache of the default ConnectionPool, which wraps DatabaseUtils.getConnection and caches
+//256 statements per connection unless setStatementCacheSize changes it. With the cache turned off every call is prepared again.
+public class ProcedureHandle {
+
+	private final String call;
+	private final int parameterCount;
+
+	private volatile Layout layout;
+
+	private ProcedureHandle(String call, int parameterCount) {
+		this.call = call;
+		this.parameterCount = parameterCount;
+		this.layout = new Layout(parameterCount, new int[0], new int[0], new Class<?>[0], new boolean[0]);
+	}
+
+
+	public static ProcedureHandle prepare(String call) {
+		return new ProcedureHandle(call, countPlaceholders(call));
+	}
+
+
+	public ProcedureHandle registerOut(int position, int sqlType) {
+		return registerOut(position, sqlType, null);
+	}
+
+
+	//The OUT value is read with the getter matching javaType, or getObject when it is null
+	public ProcedureHandle registerOut(int position, int sqlType, Class<?> javaType) {
+		return register(position, sqlType, javaType, false);
+	}
+
+
+	//INOUT positions take a value from the parameters of each call and are read back like OUT positions
+	public ProcedureHandle registerInOut(int position, int sqlType, Class<?> javaType) {
+		return register(position, sqlType, javaType, true);
+	}
+
+
+	private synchronized ProcedureHandle register(int position, int sqlType, Class<?> javaType, boolean inOut) {
+		if (position < 1 || position > parameterCount) {
+			throw new IllegalArgumentException("Position " + position + " is outside the " + parameterCount + " parameters of " + call);
+		}
+
+		Layout current = layout;
+
+		int slot = current.slotFor(position);
+		int size = current.outPositions.length;
+
+		int[] outPositions = Arrays.copyOf(current.outPositions, slot < 0 ? size + 1 : size);
+		int[] outTypes = Arrays.copyOf(current.outTypes, outPositions.length);
+		Class<?>[] outJavaTypes = Arrays.copyOf(current.outJavaTypes, outPositions.length);
+		boolean[] inOutFlags = Arrays.copyOf(current.inOut, outPositions.length);
+
+		if (slot < 0) {
+			slot = size;
+		}
+
+		outPositions[slot] = position;
+		outTypes[slot] = sqlType;
+		outJavaTypes[slot] = javaType;
+		inOutFlags[slot] = inOut;
+
+		layout = new Layout(parameterCount, outPositions, outTypes, outJavaTypes, inOutFlags);
+
+		return this;
+	}
+
+
+	public String getCall() {
+		return call;
+	}
+
+
+	public int getParameterCount() {
+		return parameterCount;
+	}
+
+
+	//Number of values each call takes, IN and INOUT positions in call order
+	public int getInParameterCount() {
+		return layout.inPositions.length;
+	}
+
+
+	public boolean hasOutParameters() {
+		return layout.outPositions.length > 0;
+	}
+
+
+	Layout getLayout() {
+		return layout;
+	}
+
+
+	//Placeholders inside quoted literals, identifiers and comments are not parameters
+	private static int countPlaceholders(String call) {
+		int count = 0;
+		char quote = 0;
+
+		for (int i=0; i<call.length(); i++) {
+			char c = call.charAt(i);
+
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (call.startsWith("--", i)) {
+				int end = call.indexOf('\n', i);
+				i = end < 0 ? call.length() : end;
+			} else if (call.startsWith("/*", i)) {
+				int end = call.indexOf("*/", i + 2);
+				i = end < 0 ? call.length() : end + 1;
+			} else if (c == '?') {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+
+	static class Layout {
+		final int[] inPositions;
+		final int[] outPositions;
+		final int[] outTypes;
+		final Class<?>[] outJavaTypes;
+		final boolean[] inOut;
+
+		//Index of each position's OUT value in the result, -1 for IN positions
+		final int[] slots;
+
+		private Layout(int parameterCount, int[] outPositions, int[] outTypes, Class<?>[] outJavaTypes, boolean[] inOut) {
+			this.outPositions = outPositions;
+			this.outTypes = outTypes;
+			this.outJavaTypes = outJavaTypes;
+			this.inOut = inOut;
+			this.slots = new int[parameterCount + 1];
+
+			Arrays.fill(slots, -1);
+
+			int inCount = parameterCount;
+
+			for (int i=0; i<outPositions.length; i++) {
+				slots[outPositions[i]] = i;
+
+				if (!inOut[i]) {
+					inCount--;
+				}
+			}
+
+			this.inPositions = new int[inCount];
+
+			int next = 0;
+
+			for (int position=1; position<=parameterCount; position++) {
+				int slot = slots[position];
+
+				if (slot < 0 || inOut[slot]) {
+					inPositions[next++] = position;
+				}
+			}
+		}
+
+		int slotFor(int position) {
+			return position < slots.length ? slots[position] : -1;
+		}
+
+		void bind(CallableStatement cs, Object[] parameters) throws Exception {
+			for (int i=0; i<outPositions.length; i++) {
+				cs.registerOutParameter(outPositions[i], outTypes[i]);
+			}
+
+			for (int i=0; i<inPositions.length; i++) {
+				cs.setObject(inPositions[i], parameters[i]);
+			}
+		}
+
+		Object[] read(CallableStatement cs) throws Exception {
+			Object[] values = new Object[outPositions.length];
+
+			for (int i=0; i<values.length; i++) {
+				values[i] = readOut(cs, outPositions[i], outJavaTypes[i]);
+			}
+
+			return values;
+		}
+
+		private static Object readOut(CallableStatement cs, int position, Class<?> javaType) throws Exception {
+			Object value;
+
+			if (javaType == null || javaType == Object.class) {
+				return cs.getObject(position);
+			} else if (javaType == String.class) {
+				value = cs.getString(position);
+			} else if (javaType == Integer.class || javaType == int.class) {
+				value = cs.getInt(position);
+			} else if (javaType == Long.class || javaType == long.class) {
+				value = cs.getLong(position);
+			} else if (javaType == Double.class || javaType == double.class) {
+				value = cs.getDouble(position);
+			} else {
+				return Utils.cast(cs.getObject(position), javaType);
+			}
+
+			return cs.wasNull() ? null : value;
+		}
+	}
+
+}
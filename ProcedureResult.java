@@ -0,0 +1,50 @@
+package com.billings.utils;
+
+import java.util.Arrays;
+
+//OUT values of one procedure call, looked up by their parameter position in the call
+public class ProcedureResult {
+
+	private final ProcedureHandle.Layout layout;
+	private final Object[] values;
+
+	ProcedureResult(ProcedureHandle.Layout layout, Object[] values) {
+		this.layout = layout;
+		this.values = values;
+	}
+
+
+	public Object get(int position) {
+		int slot = layout.slotFor(position);
+
+		if (slot < 0) {
+			throw new IllegalArgumentException("Position " + position + " is not an OUT parameter");
+		}
+
+		return values[slot];
+	}
+
+
+	@SuppressWarnings("unchecked")
+	public <T> T get(int position, Class<T> type) {
+		return (T)Utils.cast(get(position), type);
+	}
+
+
+	//OUT values in the order they were registered
+	public Object[] toArray() {
+		return values.clone();
+	}
+
+
+	public int size() {
+		return values.length;
+	}
+
+
+	@Override
+	public String toString() {
+		return "ProcedureResult" + Arrays.toString(values);
+	}
+
+}
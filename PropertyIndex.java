@@ -0,0 +1,102 @@
+package com.billings.utils;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class PropertyIndex {
+
+	private static final int MAX_CACHED_NAMES = 10000;
+
+	private static final ClassValue<PropertyIndex> indexes = new ClassValue<PropertyIndex>() {
+		@Override
+		protected PropertyIndex computeValue(Class<?> type) {
+			return new PropertyIndex(type);
+		}
+	};
+
+	private static final Map<String, String> standardizedNames = new ConcurrentHashMap<String, String>();
+
+	private final Map<String, Method> getters;
+	private final Map<String, Method> setters;
+
+	private PropertyIndex(Class<?> type) {
+		Map<String, Method> getters = new HashMap<String, Method>();
+		Map<String, Method> setters = new HashMap<String, Method>();
+
+		for (Method method : type.getMethods()) {
+			String methodName = method.getName();
+
+			if (methodName.length() > 3 && methodName.startsWith("get")) {
+				getters.put(standardize(methodName.substring(3)), method);
+			} else if (methodName.length() > 3 && methodName.startsWith("set")) {
+				setters.put(standardize(methodName.substring(3)), method);
+			}
+		}
+
+		this.getters = Collections.unmodifiableMap(getters);
+		this.setters = Collections.unmodifiableMap(setters);
+	}
+
+
+	public static PropertyIndex forClass(Class<?> type) {
+		return indexes.get(type);
+	}
+
+
+	public Method getGetter(String attribute) {
+		return getters.get(standardize(attribute));
+	}
+
+
+	public Method getSetter(String attribute) {
+		return setters.get(standardize(attribute));
+	}
+
+
+	public Map<String, Method> getGetters() {
+		return getters;
+	}
+
+
+	public Map<String, Method> getSetters() {
+		return setters;
+	}
+
+
+	public static String standardize(String str) {
+		String standardized = standardizedNames.get(str);
+
+		if (standardized == null) {
+			standardized = strip(str);
+
+			if (standardizedNames.size() >= MAX_CACHED_NAMES) {
+				standardizedNames.clear();
+			}
+
+			standardizedNames.put(str, standardized);
+		}
+
+		return standardized;
+	}
+
+
+	private static String strip(String str) {
+		StringBuilder stripped = new StringBuilder(str.length());
+
+		for (int i=0; i<str.length(); i++) {
+			char c = str.charAt(i);
+
+			if (c >= 'A' && c <= 'Z') {
+				stripped.append((char)(c + ('a' - 'A')));
+			} else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+				stripped.append(c);
+			}
+		}
+
+		return stripped.toString();
+	}
+
+}
@@ -0,0 +1,473 @@
+package com.billings.utils;
+
+import java.lang.reflect.Method;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class QueryCache {
+
+	private static final Pattern DML_TABLE = Pattern.compile(
+			"^\\s*(?:insert\\s+(?:into\\s+)?|update\\s+|delete\\s+(?:from\\s+)?|merge\\s+(?:into\\s+)?|replace\\s+(?:into\\s+)?|truncate\\s+(?:table\\s+)?)([\\w.$\"`\\[\\]]+)",
+			Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern QUERY_TABLE = Pattern.compile("\\b(from|join)\\s+", Pattern.CASE_INSENSITIVE);
+
+	//One entry of a FROM list, the table with an optional alias and the comma before the next entry
+	private static final Pattern TABLE_ITEM = Pattern.compile(
+			"([\\w.$\"`\\[\\]]+)(?:\\s+(?:as\\s+)?(?!(?:where|join|inner|left|right|full|cross|natural|outer|on|using|group|order|having|limit|offset|fetch|union|except|intersect|minus|window|for|lateral)\\b)\\w+)?\\s*(,\\s*)?",
+			Pattern.CASE_INSENSITIVE);
+
+	private static final Object NOT_COPYABLE = new Object();
+
+	private static volatile QueryCache defaultCache;
+
+	private final Map<Key, Entry> entries;
+	private volatile int maxEntries = 1000;
+	private volatile long maxWeight = 100000;
+	private volatile long ttlMillis = 60000;
+	private long weight;
+
+	//Bumped on every invalidation so a read that overlapped a write does not store its stale result
+	private long generation;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	public QueryCache() {
+		this.entries = new LinkedHashMap<Key, Entry>(64, 0.75f, true);
+	}
+
+
+	public static QueryCache getDefault() {
+		QueryCache cache = defaultCache;
+
+		if (cache == null) {
+			synchronized (QueryCache.class) {
+				if (defaultCache == null) {
+					defaultCache = new QueryCache();
+				}
+
+				cache = defaultCache;
+			}
+		}
+
+		return cache;
+	}
+
+
+	public static void setDefault(QueryCache cache) {
+		defaultCache = cache;
+	}
+
+
+	//Invalidates the default cache only if it has been created, so writes cost nothing when caching is unused
+	static void invalidateForStatement(String sql) {
+		QueryCache cache = defaultCache;
+
+		if (cache != null) {
+			cache.invalidateStatement(sql);
+		}
+	}
+
+
+	//Stored procedures can write to any table, so a call clears the whole default cache
+	static void invalidateForCall() {
+		QueryCache cache = defaultCache;
+
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+
+	public QueryCache setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+		return this;
+	}
+
+
+	//Weight is the number of rows held, a single cell weighs 1
+	public QueryCache setMaxWeight(long maxWeight) {
+		this.maxWeight = maxWeight;
+		return this;
+	}
+
+
+	public QueryCache setTtlMillis(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+		return this;
+	}
+
+
+	//Callers get their own copies of the rows, the cached instances are never handed out.
+	//Queries whose tables cannot be read from the SQL and were not given are not cached, nor are rows that cannot be copied.
+	@SuppressWarnings("unchecked")
+	<T> T get(String sql, Class<?> resultType, Object[] parameters, String[] tables, Supplier<T> loader) {
+		Key key = new Key(sql, resultType, parameters);
+		long now = System.currentTimeMillis();
+		long readGeneration;
+		Object cached = null;
+
+		synchronized (this) {
+			Entry entry = entries.get(key);
+
+			if (entry != null) {
+				if (entry.expiresAt > now) {
+					cached = entry.value;
+				} else {
+					remove(key, entry);
+				}
+			}
+
+			readGeneration = generation;
+		}
+
+		if (cached != null) {
+			Object copy = copy(cached);
+
+			if (copy != NOT_COPYABLE) {
+				hits.increment();
+				return (T)copy;
+			}
+
+			//Copyable when it was stored, a getter that fails now sends the query back to the database
+			discard(key, cached);
+		}
+
+		misses.increment();
+
+		T value = loader.get();
+
+		if (value == null) {
+			return null;
+		}
+
+		Set<String> queryTables = tables == null ? parseQueryTables(sql) : normalize(tables);
+
+		if (queryTables == null) {
+			return value;
+		}
+
+		Object copy = copy(value);
+
+		if (copy == NOT_COPYABLE) {
+			return value;
+		}
+
+		put(key, value, queryTables, now + ttlMillis, readGeneration);
+
+		return (T)copy;
+	}
+
+
+	private static Object copy(Object value) {
+		if (value instanceof List) {
+			List<?> rows = (List<?>)value;
+			List<Object> copies = new ArrayList<Object>(rows.size());
+
+			for (Object row : rows) {
+				Object copy = copyRow(row);
+
+				if (copy == NOT_COPYABLE) {
+					return NOT_COPYABLE;
+				}
+
+				copies.add(copy);
+			}
+
+			return copies;
+		} else if (value instanceof SingleResult && ((SingleResult<?>)value).isPresent()) {
+			Object copy = copyRow(((SingleResult<?>)value).get());
+
+			return copy == NOT_COPYABLE ? NOT_COPYABLE : SingleResult.of(copy);
+		}
+
+		return copyRow(value);
+	}
+
+
+	//Shallow copy, beans are copied through their setters like RowMapper populated them.
+	//NOT_COPYABLE when the type has no public no-arg constructor or an accessor fails.
+	@SuppressWarnings("unchecked")
+	private static Object copyRow(Object row) {
+		if (row == null || row instanceof String || row instanceof Number || row instanceof Boolean || row instanceof Character
+				|| row instanceof Enum || row instanceof TemporalAccessor || row.getClass().isRecord()) {
+			return row;
+		}
+
+		try {
+			if (row instanceof ResultRow) {
+				return ((ResultRow)row).copy();
+			} else if (row instanceof byte[]) {
+				return ((byte[])row).clone();
+			} else if (row instanceof java.util.Date) {
+				return ((java.util.Date)row).clone();
+			} else if (row instanceof Map) {
+				Map<Object, Object> copy = (Map<Object, Object>)row.getClass().getConstructor().newInstance();
+				copy.putAll((Map<?, ?>)row);
+
+				return copy;
+			}
+
+			Object copy = row.getClass().getConstructor().newInstance();
+
+			PropertyIndex index = PropertyIndex.forClass(row.getClass());
+
+			for (Map.Entry<String, Method> setter : index.getSetters().entrySet()) {
+				Method getter = index.getGetter(setter.getKey());
+
+				if (getter != null) {
+					setter.getValue().invoke(copy, getter.invoke(row));
+				}
+			}
+
+			return copy;
+		} catch(ReflectiveOperationException | RuntimeException e) {
+			return NOT_COPYABLE;
+		}
+	}
+
+
+	private synchronized void discard(Key key, Object value) {
+		Entry entry = entries.get(key);
+
+		if (entry != null && entry.value == value) {
+			remove(key, entry);
+		}
+	}
+
+
+	private synchronized void put(Key key, Object value, Set<String> tables, long expiresAt, long readGeneration) {
+		if (generation != readGeneration) {
+			return;
+		}
+
+		Entry entry = new Entry(value, tables, expiresAt, weigh(value));
+
+		Entry previous = entries.put(key, entry);
+
+		if (previous != null) {
+			weight -= previous.weight;
+		}
+
+		weight += entry.weight;
+
+		evictOverflow();
+	}
+
+
+	private void evictOverflow() {
+		Iterator<Entry> eldest = entries.values().iterator();
+
+		while (eldest.hasNext() && (entries.size() > maxEntries || weight > maxWeight)) {
+			Entry entry = eldest.next();
+
+			weight -= entry.weight;
+			eldest.remove();
+
+			evictions.increment();
+		}
+	}
+
+
+	private void remove(Key key, Entry entry) {
+		entries.remove(key);
+		weight -= entry.weight;
+	}
+
+
+	public void invalidate(String... tables) {
+		Set<String> invalidated = normalize(tables);
+
+		synchronized (this) {
+			generation++;
+
+			Iterator<Entry> iterator = entries.values().iterator();
+
+			while (iterator.hasNext()) {
+				Entry entry = iterator.next();
+
+				if (!Collections.disjoint(entry.tables, invalidated)) {
+					weight -= entry.weight;
+					iterator.remove();
+
+					invalidations.increment();
+				}
+			}
+		}
+	}
+
+
+	public synchronized void invalidateAll() {
+		generation++;
+
+		invalidations.add(entries.size());
+
+		entries.clear();
+		weight = 0;
+	}
+
+
+	//Statements whose target table cannot be parsed clear the whole cache
+	void invalidateStatement(String sql) {
+		Matcher matcher = DML_TABLE.matcher(sql);
+
+		if (matcher.find()) {
+			invalidate(matcher.group(1));
+		} else {
+			invalidateAll();
+		}
+	}
+
+
+	//Null when a FROM list cannot be read, nothing would invalidate such a result.
+	//Subqueries are skipped here, their own FROM clauses are read as they are reached.
+	private static Set<String> parseQueryTables(String sql) {
+		Set<String> tables = new HashSet<String>();
+
+		Matcher keyword = QUERY_TABLE.matcher(sql);
+		Matcher item = TABLE_ITEM.matcher(sql);
+
+		while (keyword.find()) {
+			boolean list = keyword.group(1).equalsIgnoreCase("from");
+			int position = keyword.end();
+
+			while (position < sql.length() && sql.charAt(position) != '(') {
+				item.region(position, sql.length());
+
+				//Table functions and LATERAL hide the tables they read
+				if (!item.lookingAt() || item.group(1).equalsIgnoreCase("lateral") || sql.startsWith("(", item.end(1))) {
+					return null;
+				}
+
+				tables.add(normalize(item.group(1)));
+
+				if (!list || item.group(2) == null) {
+					break;
+				}
+
+				position = item.end();
+			}
+		}
+
+		return tables.isEmpty() ? null : tables;
+	}
+
+
+	private static Set<String> normalize(String[] tables) {
+		Set<String> normalized = new HashSet<String>();
+
+		for (String table : tables) {
+			normalized.add(normalize(table));
+		}
+
+		return normalized;
+	}
+
+
+	//Schema qualifiers and quoting are dropped so schema.table and table invalidate each other
+	private static String normalize(String table) {
+		String name = table.replaceAll("[\"`\\[\\]]", "");
+
+		int dot = name.lastIndexOf('.');
+
+		return name.substring(dot + 1).toLowerCase(Locale.ROOT);
+	}
+
+
+	private static long weigh(Object value) {
+		if (value instanceof Collection) {
+			return Math.max(1, ((Collection<?>)value).size());
+		}
+
+		return 1;
+	}
+
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+
+	private static class Key {
+		private final String sql;
+		private final Class<?> resultType;
+		private final Object[] parameters;
+		private final int hash;
+
+		private Key(String sql, Class<?> resultType, Object[] parameters) {
+			this.sql = sql;
+			this.resultType = resultType;
+			this.parameters = parameters == null ? new Object[0] : parameters.clone();
+			this.hash = 31 * (31 * sql.hashCode() + resultType.hashCode()) + Arrays.deepHashCode(this.parameters);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key)obj;
+
+			return hash == other.hash && resultType == other.resultType && sql.equals(other.sql) && Arrays.deepEquals(parameters, other.parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+
+	private static class Entry {
+		private final Object value;
+		private final Set<String> tables;
+		private final long expiresAt;
+		private final long weight;
+
+		private Entry(Object value, Set<String> tables, long expiresAt, long weight) {
+			this.value = value;
+			this.tables = tables;
+			this.expiresAt = expiresAt;
+			this.weight = weight;
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package com.billings.utils;
+
+import java.lang.reflect.Constructor;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class QueryStream<T> implements Iterator<T>, AutoCloseable {
+
+	private final String query;
+	private final Class<T> resultType;
+	private final Object[] parameters;
+
+	private int fetchSize = 500;
+
+	private Connection conn;
+	private PreparedStatement ps;
+	private ResultSet rs;
+	private RowReader<T> reader;
+	private StatementMetrics.Timer timer;
+	private long rowCount;
+	private boolean autoCommit;
+
+	private boolean started;
+	private boolean finished;
+	private boolean hasRow;
+	private T row;
+
+	QueryStream(String query, Class<T> resultType, Object[] parameters) {
+		this.query = query;
+		this.resultType = resultType;
+		this.parameters = parameters;
+	}
+
+
+	public QueryStream<T> withFetchSize(int fetchSize) {
+		if (started) {
+			throw new IllegalStateException("Fetch size must be set before the query is executed");
+		}
+
+		this.fetchSize = fetchSize;
+		return this;
+	}
+
+
+	public Stream<T> stream() {
+		Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+
+		return StreamSupport.stream(spliterator, false).onClose(this::close);
+	}
+
+
+	@Override
+	public boolean hasNext() {
+		if (hasRow) {
+			return true;
+		} else if (finished) {
+			return false;
+		}
+
+		try {
+			if (!started) {
+				open();
+			}
+
+			if (rs.next()) {
+				row = reader.read(rs);
+				hasRow = true;
+				rowCount++;
+			} else {
+				close();
+			}
+
+		} catch (Exception e) {
+			if (timer != null) {
+				timer.failed();
+			}
+
+			close();
+			throw new RuntimeException("Could not read the next row of " + query, e);
+		}
+
+		return hasRow;
+	}
+
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		T current = row;
+
+		row = null;
+		hasRow = false;
+
+		return current;
+	}
+
+
+	private void open() throws Exception {
+		started = true;
+		timer = StatementMetrics.startDetached(query);
+
+		conn = ConnectionPool.getPooledConnection();
+		timer.acquired();
+
+		//Autocommit stays off until close, otherwise PostgreSQL ignores the fetch size and buffers the whole result
+		autoCommit = SQLStatementUtils.beginCursorRead(conn);
+
+		ps = conn.prepareStatement(query);
+		ps.setFetchSize(fetchSize);
+
+		for (int i=0; i<parameters.length; i++) {
+			ps.setObject(i+1, parameters[i]);
+		}
+
+		timer.prepared();
+
+		rs = ps.executeQuery();
+		timer.executed();
+
+		reader = createReader(resultType, SQLStatementUtils.getColumnNames(rs.getMetaData()));
+	}
+
+
+	@SuppressWarnings("unchecked")
+	static <T> RowReader<T> createReader(Class<T> resultType, String[] columnNames) throws Exception {
+		if (Map.class.isAssignableFrom(resultType) && resultType.isAssignableFrom(ResultRow.class)) {
+			ResultRow.Columns columns = new ResultRow.Columns(columnNames);
+
+			return rs -> {
+				ResultRow row = new ResultRow(columns);
+
+				for (int i=0; i<columns.size(); i++) {
+					row.set(i, rs.getObject(columns.getSourceColumn(i)));
+				}
+
+				return (T)row;
+			};
+		} else if (Map.class.isAssignableFrom(resultType)) {
+			Constructor<T> constructor = resultType.getConstructor();
+			ResultRow.Columns columns = new ResultRow.Columns(columnNames);
+
+			return rs -> {
+				Map<String, Object> map = (Map<String, Object>)constructor.newInstance();
+
+				for (int i=0; i<columns.size(); i++) {
+					map.put(columns.getName(i), rs.getObject(columns.getSourceColumn(i)));
+				}
+
+				return (T)map;
+			};
+		}
+
+		RowMapper<T> mapper = RowMapper.getMapper(resultType, columnNames);
+
+		return mapper::map;
+	}
+
+
+	@Override
+	public void close() {
+		finished = true;
+		hasRow = false;
+		row = null;
+
+		//Mapping time of a stream includes the time the caller spent consuming it
+		if (timer != null) {
+			timer.mapped(rowCount);
+		}
+
+		Utils.closeAutoCloseables(rs, ps);
+		SQLStatementUtils.endCursorRead(conn, autoCommit);
+		Utils.closeAutoCloseables(conn);
+
+		if (timer != null) {
+			timer.finish();
+			timer = null;
+		}
+
+		rs = null;
+		ps = null;
+		conn = null;
+	}
+
+
+	interface RowReader<T> {
+		T read(ResultSet rs) throws Exception;
+	}
+
+}
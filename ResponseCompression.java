@@ -0,0 +1,207 @@
+package com.billings.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+public class ResponseCompression {
+
+	private static final String GZIP = "gzip";
+	private static final String DEFLATE = "deflate";
+
+	private static final byte[] GZIP_HEADER = new byte[]{ 0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private static final ArrayBlockingQueue<Deflater> gzipDeflaters = new ArrayBlockingQueue<Deflater>(32);
+	private static final ArrayBlockingQueue<Deflater> zlibDeflaters = new ArrayBlockingQueue<Deflater>(32);
+
+	private static volatile int threshold = 2048;
+	private static volatile int level = Deflater.DEFAULT_COMPRESSION;
+
+	public static void setThreshold(int bytes) {
+		threshold = bytes;
+	}
+
+
+	public static void setLevel(int compressionLevel) {
+		level = compressionLevel;
+	}
+
+
+	//Adds Vary: Accept-Encoding whatever the outcome, the response differs by that header even when it goes out uncompressed
+	public static String negotiate(HttpServletRequest request, HttpServletResponse response) {
+		response.addHeader("Vary", "Accept-Encoding");
+
+		return negotiate(request);
+	}
+
+
+	//A wildcard only stands for codings the client did not refuse by name
+	public static String negotiate(HttpServletRequest request) {
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+
+		if (acceptEncoding == null) {
+			return null;
+		}
+
+		boolean gzip = false;
+		boolean deflate = false;
+		boolean wildcard = false;
+
+		Set<String> refused = new HashSet<String>();
+
+		for (String token : acceptEncoding.split(",")) {
+			String[] parts = token.split(";");
+			String coding = parts[0].trim().toLowerCase();
+
+			if (isRefused(parts)) {
+				refused.add(coding);
+			} else if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+				gzip = true;
+			} else if (coding.equals(DEFLATE)) {
+				deflate = true;
+			} else if (coding.equals("*")) {
+				wildcard = true;
+			}
+		}
+
+		if (wildcard) {
+			gzip |= !refused.contains(GZIP) && !refused.contains("x-gzip");
+			deflate |= !refused.contains(DEFLATE);
+		}
+
+		if (gzip) {
+			return GZIP;
+		}
+
+		return deflate ? DEFLATE : null;
+	}
+
+
+	private static boolean isRefused(String[] parts) {
+		for (int i=1; i<parts.length; i++) {
+			String parameter = parts[i].trim();
+
+			if (parameter.startsWith("q=")) {
+				try {
+					return Double.parseDouble(parameter.substring(2)) <= 0;
+				} catch (NumberFormatException e) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+
+	//contentLength is -1 when the payload was too large to buffer, which is treated as over the threshold.
+	//Vary is left to negotiate(request, response), which runs before any encoding is known.
+	public static OutputStream open(HttpServletResponse response, String encoding, int contentLength) throws IOException {
+		if (encoding == null || (contentLength >= 0 && contentLength < threshold)) {
+			if (contentLength >= 0) {
+				response.setContentLength(contentLength);
+			}
+
+			return response.getOutputStream();
+		}
+
+		response.setHeader("Content-Encoding", encoding);
+
+		return compress(response.getOutputStream(), encoding.equals(GZIP));
+	}
+
+
+	public static OutputStream compress(OutputStream out, boolean gzip) throws IOException {
+		ArrayBlockingQueue<Deflater> pool = gzip ? gzipDeflaters : zlibDeflaters;
+
+		Deflater deflater = pool.poll();
+
+		if (deflater == null) {
+			deflater = new Deflater(level, gzip);
+		} else {
+			deflater.setLevel(level);
+		}
+
+		return new PooledDeflaterOutputStream(out, deflater, pool, gzip);
+	}
+
+
+	private static class PooledDeflaterOutputStream extends DeflaterOutputStream {
+		private final ArrayBlockingQueue<Deflater> pool;
+		private final CRC32 crc;
+		private boolean finished;
+		private boolean closed;
+
+		private PooledDeflaterOutputStream(OutputStream out, Deflater deflater, ArrayBlockingQueue<Deflater> pool, boolean gzip) throws IOException {
+			super(out, deflater, 8192);
+
+			this.pool = pool;
+			this.crc = gzip ? new CRC32() : null;
+
+			if (gzip) {
+				out.write(GZIP_HEADER);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			super.write(b, off, len);
+
+			if (crc != null) {
+				crc.update(b, off, len);
+			}
+		}
+
+		@Override
+		public void finish() throws IOException {
+			if (finished) {
+				return;
+			}
+
+			finished = true;
+
+			super.finish();
+
+			if (crc != null) {
+				writeInt((int)crc.getValue());
+				writeInt((int)def.getBytesRead());
+			}
+		}
+
+		private void writeInt(int value) throws IOException {
+			out.write(value & 0xff);
+			out.write((value >> 8) & 0xff);
+			out.write((value >> 16) & 0xff);
+			out.write((value >> 24) & 0xff);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+
+			try {
+				finish();
+				out.close();
+			} finally {
+				def.reset();
+
+				if (!pool.offer(def)) {
+					def.end();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,208 @@
+package com.billings.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+public class ResultRow extends AbstractMap<String, Object> {
+
+	private final Columns columns;
+	private final Object[] values;
+
+	public ResultRow(Columns columns) {
+		this.columns = columns;
+		this.values = new Object[columns.names.length];
+	}
+
+
+	public Object get(int columnIndex) {
+		return values[columnIndex];
+	}
+
+
+	public void set(int columnIndex, Object value) {
+		values[columnIndex] = value;
+	}
+
+
+	public Columns getColumns() {
+		return columns;
+	}
+
+
+	//Shares the column layout, only the values are copied
+	ResultRow copy() {
+		ResultRow copy = new ResultRow(columns);
+		System.arraycopy(values, 0, copy.values, 0, values.length);
+
+		return copy;
+	}
+
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+
+	@Override
+	public boolean containsKey(Object key) {
+		return columns.indexOf(key) >= 0;
+	}
+
+
+	@Override
+	public Object get(Object key) {
+		int index = columns.indexOf(key);
+
+		return index < 0 ? null : values[index];
+	}
+
+
+	@Override
+	public Object put(String key, Object value) {
+		int index = columns.indexOf(key);
+
+		if (index < 0) {
+			throw new UnsupportedOperationException(String.format("%s is not a column of this result", key));
+		}
+
+		Object previous = values[index];
+		values[index] = value;
+
+		return previous;
+	}
+
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return new Iterator<Map.Entry<String, Object>>() {
+					private int index;
+
+					@Override
+					public boolean hasNext() {
+						return index < values.length;
+					}
+
+					@Override
+					public Map.Entry<String, Object> next() {
+						if (index >= values.length) {
+							throw new NoSuchElementException();
+						}
+
+						return new Entry(index++);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+	}
+
+
+	private class Entry implements Map.Entry<String, Object> {
+		private final int index;
+
+		private Entry(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public String getKey() {
+			return columns.names[index];
+		}
+
+		@Override
+		public Object getValue() {
+			return values[index];
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			Object previous = values[index];
+			values[index] = value;
+
+			return previous;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Map.Entry)) {
+				return false;
+			}
+
+			Map.Entry<?, ?> other = (Map.Entry<?, ?>)obj;
+
+			return getKey().equals(other.getKey()) && (getValue() == null ? other.getValue() == null : getValue().equals(other.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			return getKey().hashCode() ^ (getValue() == null ? 0 : getValue().hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+
+	//A repeated label keeps only its first column, as rs.getObject(label) would, so the row stays a valid Map
+	public static class Columns {
+		private final String[] names;
+		private final int[] sourceColumns;
+		private final Map<String, Integer> indexes;
+
+		public Columns(String[] names) {
+			this.indexes = new HashMap<String, Integer>(names.length * 2);
+
+			String[] unique = new String[names.length];
+			int[] sources = new int[names.length];
+			int count = 0;
+
+			for (int i=0; i<names.length; i++) {
+				if (!indexes.containsKey(names[i])) {
+					indexes.put(names[i], count);
+					unique[count] = names[i];
+					sources[count] = i + 1;
+					count++;
+				}
+			}
+
+			this.names = count == names.length ? unique : Arrays.copyOf(unique, count);
+			this.sourceColumns = count == names.length ? sources : Arrays.copyOf(sources, count);
+		}
+
+		public int indexOf(Object name) {
+			Integer index = indexes.get(name);
+
+			return index == null ? -1 : index;
+		}
+
+		public String getName(int index) {
+			return names[index];
+		}
+
+		//The 1-based result set column the value at index is read from
+		public int getSourceColumn(int index) {
+			return sourceColumns[index];
+		}
+
+		public int size() {
+			return names.length;
+		}
+	}
+
+}
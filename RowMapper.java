@@ -0,0 +1,232 @@
+package com.billings.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RowMapper<T> {
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+	private static final ClassValue<Map<List<String>, RowMapper<?>>> mappers = new ClassValue<Map<List<String>, RowMapper<?>>>() {
+		@Override
+		protected Map<List<String>, RowMapper<?>> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<List<String>, RowMapper<?>>();
+		}
+	};
+
+	private final Class<T> type;
+	private final MethodHandle constructor;
+	private final ColumnSetter[] setters;
+
+	private RowMapper(Class<T> type, MethodHandle constructor, ColumnSetter[] setters) {
+		this.type = type;
+		this.constructor = constructor;
+		this.setters = setters;
+	}
+
+
+	//Mappers are cached per class, so the one found for type always maps to T
+	@SuppressWarnings("unchecked")
+	public static <T> RowMapper<T> getMapper(Class<T> type, String... columnNames) throws Exception {
+		Map<List<String>, RowMapper<?>> typeMappers = mappers.get(type);
+
+		List<String> key = Arrays.asList(columnNames.clone());
+
+		RowMapper<?> mapper = typeMappers.get(key);
+
+		if (mapper == null) {
+			mapper = compile(type, columnNames);
+
+			RowMapper<?> existing = typeMappers.putIfAbsent(key, mapper);
+
+			if (existing != null) {
+				mapper = existing;
+			}
+		}
+
+		return (RowMapper<T>)mapper;
+	}
+
+
+	private static <T> RowMapper<T> compile(Class<T> type, String[] columnNames) throws Exception {
+		MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+				.asType(MethodType.methodType(Object.class));
+
+		Method[] methods = Utils.setMethodsForAttributes(type, columnNames);
+
+		ColumnSetter[] setters = new ColumnSetter[methods.length];
+
+		for (int i=0; i<methods.length; i++) {
+			setters[i] = createSetter(methods[i]);
+		}
+
+		return new RowMapper<T>(type, constructor, setters);
+	}
+
+
+	public T map(ResultSet rs) throws Exception {
+		try {
+			Object result = constructor.invokeExact();
+
+			for (int i=0; i<setters.length; i++) {
+				setters[i].set(result, rs, i+1);
+			}
+
+			return type.cast(result);
+
+		} catch(Exception | Error e) {
+			throw e;
+		} catch(Throwable t) {
+			throw new Exception(t);
+		}
+	}
+
+
+	private static ColumnSetter createSetter(Method method) throws Exception {
+		//Grab the first element only because the setter method only accepts one value
+		Class<?> inputType = method.getParameterTypes()[0];
+
+		MethodHandle handle = lookup.unreflect(method);
+
+		if (inputType == int.class) {
+			MethodHandle setter = typed(handle, int.class);
+
+			return (target, rs, column) -> {
+				int value = rs.getInt(column);
+
+				if (!rs.wasNull())
+					setter.invokeExact(target, value);
+			};
+		} else if (inputType == long.class) {
+			MethodHandle setter = typed(handle, long.class);
+
+			return (target, rs, column) -> {
+				long value = rs.getLong(column);
+
+				if (!rs.wasNull())
+					setter.invokeExact(target, value);
+			};
+		} else if (inputType == double.class) {
+			MethodHandle setter = typed(handle, double.class);
+
+			return (target, rs, column) -> {
+				double value = rs.getDouble(column);
+
+				if (!rs.wasNull())
+					setter.invokeExact(target, value);
+			};
+		} else if (inputType == float.class) {
+			MethodHandle setter = typed(handle, float.class);
+
+			return (target, rs, column) -> {
+				float value = rs.getFloat(column);
+
+				if (!rs.wasNull())
+					setter.invokeExact(target, value);
+			};
+		} else if (inputType == short.class) {
+			MethodHandle setter = typed(handle, short.class);
+
+			return (target, rs, column) -> {
+				short value = rs.getShort(column);
+
+				if (!rs.wasNull())
+					setter.invokeExact(target, value);
+			};
+		} else if (inputType == byte.class) {
+			MethodHandle setter = typed(handle, byte.class);
+
+			return (target, rs, column) -> {
+				byte value = rs.getByte(column);
+
+				if (!rs.wasNull())
+					setter.invokeExact(target, value);
+			};
+		} else if (inputType == boolean.class) {
+			MethodHandle setter = typed(handle, boolean.class);
+
+			return (target, rs, column) -> {
+				boolean value = rs.getBoolean(column);
+
+				if (!rs.wasNull())
+					setter.invokeExact(target, value);
+			};
+		} else if (inputType == Integer.class) {
+			MethodHandle setter = typed(handle, Object.class);
+
+			return (target, rs, column) -> {
+				int value = rs.getInt(column);
+
+				setter.invokeExact(target, rs.wasNull() ? null : (Object)Integer.valueOf(value));
+			};
+		} else if (inputType == Long.class) {
+			MethodHandle setter = typed(handle, Object.class);
+
+			return (target, rs, column) -> {
+				long value = rs.getLong(column);
+
+				setter.invokeExact(target, rs.wasNull() ? null : (Object)Long.valueOf(value));
+			};
+		} else if (inputType == Double.class) {
+			MethodHandle setter = typed(handle, Object.class);
+
+			return (target, rs, column) -> {
+				double value = rs.getDouble(column);
+
+				setter.invokeExact(target, rs.wasNull() ? null : (Object)Double.valueOf(value));
+			};
+		} else if (inputType == String.class) {
+			MethodHandle setter = typed(handle, Object.class);
+
+			return (target, rs, column) -> {
+				Object value = rs.getObject(column);
+
+				setter.invokeExact(target, value == null ? null : (Object)value.toString());
+			};
+		} else if (inputType == Timestamp.class) {
+			MethodHandle setter = typed(handle, Object.class);
+
+			return (target, rs, column) -> {
+				setter.invokeExact(target, (Object)rs.getTimestamp(column));
+			};
+		} else if (inputType == java.sql.Date.class) {
+			MethodHandle setter = typed(handle, Object.class);
+
+			return (target, rs, column) -> {
+				setter.invokeExact(target, (Object)rs.getDate(column));
+			};
+		} else if (inputType == BigDecimal.class) {
+			MethodHandle setter = typed(handle, Object.class);
+
+			return (target, rs, column) -> {
+				setter.invokeExact(target, (Object)rs.getBigDecimal(column));
+			};
+		} else {
+			MethodHandle setter = typed(handle, Object.class);
+
+			return (target, rs, column) -> {
+				setter.invokeExact(target, Utils.cast(rs.getObject(column), inputType));
+			};
+		}
+	}
+
+
+	private static MethodHandle typed(MethodHandle handle, Class<?> valueType) {
+		return handle.asType(MethodType.methodType(void.class, Object.class, valueType));
+	}
+
+
+	private interface ColumnSetter {
+		void set(Object target, ResultSet rs, int column) throws Throwable;
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.billings.utils;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.billings.utils.SQLStatement")
+@Label("SQL Statement")
+@Description("Query, update or batch executed through SQLStatementUtils")
+class SQLStatementEvent extends StatementEvent {
+
+	private static final EventType type = EventType.getEventType(SQLStatementEvent.class);
+
+	static SQLStatementEvent begin(String sql) {
+		if (!type.isEnabled()) {
+			return null;
+		}
+
+		SQLStatementEvent event = new SQLStatementEvent();
+		event.sql = sql;
+		event.begin();
+
+		return event;
+	}
+
+}
@@ -1,23 +1,40 @@
 package com.billings.utils;
 
+import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 public class SQLStatementUtils {
 	
+	private static final int PARALLEL_BATCH_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+	
+	private static volatile int fetchSize = 500;
+	private static volatile ExecutorService batchExecutor;
+	
 	private Connection conn;
 	private PreparedStatement ps;
 	private ResultSet rs;
@@ -33,22 +50,36 @@ public class SQLStatementUtils {
 	
 	
 	public static void executeUpdate(String query, Object... parameters) {
-		Connection conn = getConnection();
-		PreparedStatement ps = prepareQuery(conn, query);
-		
-		addParams(conn, ps, parameters);
-		
-		executeStatement(ps);
+		StatementMetrics.Timer timer = StatementMetrics.start(query);
 		
-		closeStreams(conn, ps);
+		try {
+			Connection conn = getConnection();
+			timer.acquired();
+			
+			PreparedStatement ps = prepareQuery(conn, query);
+			
+			addParams(conn, ps, parameters);
+			timer.prepared();
+			
+			executeStatement(ps);
+			timer.updated(ps);
+			timer.executed();
+			
+			closeStreams(conn, ps);
+		} finally {
+			timer.finish();
+			QueryCache.invalidateForStatement(query);
+		}
 	}
 	
 	
+	@Deprecated
 	public ResultSet executeQuery(String query) {
 		return executeQuery(query, new Object[0]);
 	}
 	
 	
+	@Deprecated
 	public ResultSet executeQuery(String query, Object... parameters) {
 		this.conn = getConnection();
 		this.ps = prepareQuery(conn, query);
@@ -61,6 +92,16 @@ public class SQLStatementUtils {
 	}
 	
 	
+	public static <T> QueryStream<T> openQuery(String query, Class<T> resultType, Object... parameters) {
+		return new QueryStream<T>(query, resultType, parameters);
+	}
+	
+	
+	public static <T> Stream<T> streamQuery(String query, Class<T> resultType, Object... parameters) {
+		return openQuery(query, resultType, parameters).stream();
+	}
+	
+	
 	public static Object executeQueryForSingleCell(String query) {
 		return executeQueryForSingleCell(query, String.class);
 	}
@@ -77,15 +118,10 @@ public class SQLStatementUtils {
 	
 	
 	public static Object executeQueryForSingleCell(String query, Class resultType, Object... parameters) {
-		List resultList = executeQuery(query, HashMap.class, parameters);
-		
-		Map<String, Object> resultMap = (Map<String, Object>)getSingleObjectResult(resultList);
-		
-		Object singleResult = getSingleObjectFromMap(resultMap);
+		Class<?> type = resultType;
+		SingleResult<?> result = querySingleCell(query, type, parameters);
 		
-		Object result = Utils.cast(singleResult, resultType);
-		
-		return result; 
+		return result == null ? null : result.orElse(null);
 	}
 	
 
@@ -94,36 +130,85 @@ public class SQLStatementUtils {
 	}
 	
 	
-	private static Object getSingleObjectResult(List resultList) {
-		int resultCount = resultList.size();
-		
-		Object obj = null;
-		
-		if (resultCount == 1) {
-			obj = resultList.get(0);
-		} 
+	public static Object executeQueryForSingleRow(String query, Class resultType, Object... parameters) {
+		Class<?> type = resultType;
+		SingleResult<?> result = querySingleRow(query, type, parameters);
 		
-		return obj;
+		return result == null ? null : result.orElse(null);
+	}
+	
+	
+	//Reads column 1 of at most two rows, the result tells no row and more than one row apart
+	public static <T> SingleResult<T> querySingleCell(String query, Class<T> resultType, Object... parameters) {
+		return querySingle(query, parameters, rs -> readCell(rs, resultType));
+	}
+	
+	
+	@SuppressWarnings("unchecked")
+	public static <T> SingleResult<T> querySingleRow(String query, Class<T> resultType, Object... parameters) {
+		return querySingle(query, parameters, rs -> QueryStream.createReader(resultType, getColumnNames(rs.getMetaData())).read(rs));
 	}
 	
 	
-	private static Object getSingleObjectFromMap(Map<String, Object> resultMap) {
-		Set<String> keys = resultMap.keySet();
+	private static <T> SingleResult<T> querySingle(String query, Object[] parameters, QueryStream.RowReader<T> reader) {
+		StatementMetrics.Timer timer = StatementMetrics.start(query);
 		
-		Object result = null;
+		Connection conn = getConnection();
+		PreparedStatement ps = null;
+		ResultSet rs = null;
 		
-		for (String key : keys) {
-			result = resultMap.get(key);
+		SingleResult<T> result = null;
+		
+		try {
+			timer.acquired();
+			
+			ps = prepareQuery(conn, query);
+			ps.setMaxRows(2);
+			
+			addParams(conn, ps, parameters);
+			timer.prepared();
+			
+			rs = getResultSetFromExecuteQuery(conn, ps);
+			timer.executed();
+			
+			if (!rs.next()) {
+				result = SingleResult.none();
+			} else {
+				T value = reader.read(rs);
+				
+				result = rs.next() ? SingleResult.many() : SingleResult.of(value);
+			}
+			
+			timer.mapped(result.isEmpty() ? 0 : result.isPresent() ? 1 : 2);
+			
+		} catch (Exception e) {
+			handleCatch(e, "Could not read single result from query");
+		} finally {
+			closeStreams(conn, ps, rs);
+			timer.finish();
 		}
 		
 		return result;
 	}
 	
 	
-	public static Object executeQueryForSingleRow(String query, Class resultType, Object... parameters) {
-		List resultList = executeQuery(query, resultType, parameters);
+	@SuppressWarnings("unchecked")
+	private static <T> T readCell(ResultSet rs, Class<T> resultType) throws Exception {
+		Object value;
 		
-		 return getSingleObjectResult(resultList);
+		if (resultType == String.class) {
+			value = rs.getString(1);
+		} else if (resultType == Integer.class || resultType == int.class) {
+			value = rs.getInt(1);
+		} else if (resultType == Long.class || resultType == long.class) {
+			value = rs.getLong(1);
+		} else if (resultType == Double.class || resultType == double.class) {
+			value = rs.getDouble(1);
+		} else {
+			return (T)Utils.cast(rs.getObject(1), resultType);
+		}
+		
+		return rs.wasNull() ? null : (T)value;
 	}
 	
 	
@@ -133,67 +218,680 @@ public class SQLStatementUtils {
 	
 	
 	public static List executeQuery(String query, Class resultType, Object... parameters) {
+		StatementMetrics.Timer timer = StatementMetrics.start(query);
+		
+		try {
+			Connection conn = getConnection();
+			timer.acquired();
+			
+			PreparedStatement ps = prepareQuery(conn, query);
+			
+			addParams(conn, ps, parameters);
+			timer.prepared();
+			
+			ResultSet rs = getResultSetFromExecuteQuery(conn, ps);
+			timer.executed();
+			
+			List<?> dataList = getDataList(rs, resultType);
+			timer.mapped(dataList == null ? 0 : dataList.size());
+			
+			closeStreams(conn, ps, rs);
+			
+			return dataList;
+		} finally {
+			timer.finish();
+		}
+	}
+	
+	
+	//Results are kept until a write to one of the tables invalidates them, each caller gets its own copy of the rows.
+	//tables null reads them from the FROM and JOIN clauses, a query whose tables cannot be read is not cached.
+	public static List<?> executeCachedQuery(String query, Class<?> resultType, String[] tables, Object... parameters) {
+		return QueryCache.getDefault().get(query, resultType, parameters, tables, () -> {
+			List<?> dataList = executeQuery(query, resultType, parameters);
+			
+			return dataList == null ? null : Collections.unmodifiableList(dataList);
+		});
+	}
+	
+	
+	public static Object executeCachedQueryForSingleCell(String query, Class<?> resultType, String[] tables, Object... parameters) {
+		SingleResult<?> result = QueryCache.getDefault().get(query, SingleResult.class, new Object[]{ resultType, parameters }, tables, () -> querySingleCell(query, resultType, parameters));
+		
+		return result == null ? null : result.orElse(null);
+	}
+	
+	
+	public static ColumnarResult executeColumnarQuery(String query, Object... parameters) {
+		StatementMetrics.Timer timer = StatementMetrics.start(query);
+		
 		Connection conn = getConnection();
-		PreparedStatement ps = prepareQuery(conn, query);
+		PreparedStatement ps = null;
+		ResultSet rs = null;
 		
-		addParams(conn, ps, parameters);
+		ColumnarResult result = null;
 		
-		ResultSet rs = getResultSetFromExecuteQuery(conn, ps);
+		boolean autoCommit = false;
 		
-		List dataList = getDataList(rs, resultType);
+		try {
+			timer.acquired();
+			
+			autoCommit = beginCursorRead(conn);
+			
+			ps = prepareQuery(conn, query);
+			ps.setFetchSize(fetchSize);
+			
+			addParams(conn, ps, parameters);
+			timer.prepared();
+			
+			rs = getResultSetFromExecuteQuery(conn, ps);
+			timer.executed();
+			
+			result = ColumnarResult.read(rs);
+			timer.mapped(result.getRowCount());
+			
+		} catch (Exception e) {
+			handleCatch(e, "Could not populate columnar result from resultSet");
+		} finally {
+			closeResultSet(rs);
+			endCursorRead(conn, autoCommit);
+			closeStreams(conn, ps);
+			timer.finish();
+		}
 		
-		closeStreams(conn, ps, rs);
+		return result;
+	}
+	
+	
+	public static void printQueryAsJSON(String query, HttpServletResponse response, Object... parameters) {
+		printQueryAsJSON(query, null, response, parameters);
+	}
+	
+	
+	public static void printQueryAsJSON(String query, HttpServletRequest request, HttpServletResponse response, Object... parameters) {
+		JSONWriter json = null;
 		
-		return dataList;
+		try {
+			json = Utils.createResponseWriter(request, response);
+			
+			serializeQuery(json, query, parameters);
+			json.endLine();
+			
+		} catch (Exception e) {
+			Utils.abortResponse(json, response);
+			handleCatch(e, "Could not print query results as JSON");
+		} finally {
+			Utils.closeAutoCloseables(json);
+		}
+	}
+	
+	
+	public static void writeQueryAsJSON(String query, Writer writer, Object... parameters) throws Exception {
+		JSONWriter json = new JSONWriter(writer);
+		
+		serializeQuery(json, query, parameters);
+		
+		json.flush();
+	}
+	
+	
+	private static void serializeQuery(JSONWriter json, String query, Object[] parameters) throws Exception {
+		StatementMetrics.Timer timer = StatementMetrics.start(query);
+		
+		Connection conn = getConnection();
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		
+		boolean autoCommit = false;
+		
+		try {
+			timer.acquired();
+			
+			autoCommit = beginCursorRead(conn);
+			
+			ps = prepareQuery(conn, query);
+			ps.setFetchSize(fetchSize);
+			
+			addParams(conn, ps, parameters);
+			timer.prepared();
+			
+			rs = getResultSetFromExecuteQuery(conn, ps);
+			timer.executed();
+			
+			String[] columnNames = getColumnNames(rs.getMetaData());
+			
+			int rows = 0;
+			
+			json.beginArray();
+			
+			while (rs.next()) {
+				json.beginObject();
+				
+				for (int i=0; i<columnNames.length; i++) {
+					json.writeField(columnNames[i], rs.getObject(i+1));
+				}
+				
+				json.endObject();
+				rows++;
+			}
+			
+			json.endArray();
+			json.describe(query, rows);
+			timer.mapped(rows);
+			
+		} catch (Exception e) {
+			timer.failed();
+			throw e;
+		} finally {
+			closeResultSet(rs);
+			endCursorRead(conn, autoCommit);
+			closeStreams(conn, ps);
+			timer.finish();
+		}
+	}
+	
+	
+	//Applies to the columnar and JSON streaming reads, which run with autocommit off because PostgreSQL ignores the fetch size under autocommit.
+	//MySQL Connector/J only fetches in chunks with useCursorFetch=true on the URL, otherwise it buffers the whole result whatever the fetch size.
+	public static void setFetchSize(int rows) {
+		fetchSize = rows;
+	}
+	
+	
+	//Returns the autocommit mode to restore once the cursor is closed
+	static boolean beginCursorRead(Connection conn) throws SQLException {
+		boolean autoCommit = conn.getAutoCommit();
+		
+		if (autoCommit) {
+			conn.setAutoCommit(false);
+		}
+		
+		return autoCommit;
+	}
+	
+	
+	//Commits rather than rolls back so anything the query did is kept, as it would have been under autocommit
+	static void endCursorRead(Connection conn, boolean autoCommit) {
+		if (conn == null || !autoCommit) {
+			return;
+		}
+		
+		try {
+			conn.commit();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			conn.setAutoCommit(true);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
 	}
 	
 	
 	public static void executeBatchUpdate(String query, Object[]... arrayOfParameters) {
+		StatementMetrics.Timer timer = StatementMetrics.start(query);
+		
 		Connection conn = getConnection();
 		
 		PreparedStatement ps = null;
 		
 		try {
+			timer.acquired();
+			
 			ps = prepareQuery(conn, query);
+			timer.prepared();
 			
-			executeBatchUpdate(query, conn, ps, arrayOfParameters);
+			timer.updated(executeBatchUpdate(query, conn, ps, arrayOfParameters));
+			timer.executed();
 		} catch (Exception e) {
 			handleCatch(e, "Could not execute batch update");
 		} finally {
 			closeStreams(conn, ps);
+			timer.finish();
+			QueryCache.invalidateForStatement(query);
 		}
 	}
 	
 	
 	public static void executBatchCallableUpdate(String query, Object[]... arrayOfParameters) {
+		StatementMetrics.Timer timer = StatementMetrics.startCallable(query);
+		
 		Connection conn = getConnection();
 		
 		CallableStatement cs = null;
 		
 		try {
+			timer.acquired();
+			
 			cs = prepareCallableStatement(conn, query);
+			timer.prepared();
 			
-			executeBatchUpdate(query, conn, cs, arrayOfParameters);
+			timer.updated(executeBatchUpdate(query, conn, cs, arrayOfParameters));
+			timer.executed();
 		} catch (Exception e) {
 			handleCatch(e, "Could not execute batch Callable Statement");
 		} finally {
 			closeStreams(conn, cs);
+			timer.finish();
+			QueryCache.invalidateForStatement(query);
+		}
+	}
+	
+	
+	public static BatchResult executeBatchUpdate(String query, BatchOptions options, Object[]... arrayOfParameters) {
+		StatementMetrics.Timer timer = StatementMetrics.start(query);
+		
+		Connection conn = getConnection();
+		
+		PreparedStatement ps = null;
+		
+		BatchResult result = new BatchResult(arrayOfParameters.length);
+		
+		try {
+			timer.acquired();
+			
+			ps = prepareQuery(conn, query);
+			timer.prepared();
+			
+			executeChunkedBatch(query, conn, ps, options, arrayOfParameters, result, true);
+			timer.executed();
+		} catch (Exception e) {
+			result.failUncommitted(e);
+			handleCatch(e, "Could not execute chunked batch update");
+		} finally {
+			closeStreams(conn, ps);
+			
+			if (result.hasFailures()) {
+				timer.failed();
+			}
+			
+			timer.updated(result.getTotalUpdateCount());
+			timer.finish();
+			QueryCache.invalidateForStatement(query);
+		}
+		
+		return result;
+	}
+	
+	
+	public static BatchResult executBatchCallableUpdate(String query, BatchOptions options, Object[]... arrayOfParameters) {
+		StatementMetrics.Timer timer = StatementMetrics.startCallable(query);
+		
+		Connection conn = getConnection();
+		
+		CallableStatement cs = null;
+		
+		BatchResult result = new BatchResult(arrayOfParameters.length);
+		
+		try {
+			timer.acquired();
+			
+			cs = prepareCallableStatement(conn, query);
+			timer.prepared();
+			
+			executeChunkedBatch(query, conn, cs, options, arrayOfParameters, result, true);
+			timer.executed();
+		} catch (Exception e) {
+			result.failUncommitted(e);
+			handleCatch(e, "Could not execute chunked batch Callable Statement");
+		} finally {
+			closeStreams(conn, cs);
+			
+			if (result.hasFailures()) {
+				timer.failed();
+			}
+			
+			timer.updated(result.getTotalUpdateCount());
+			timer.finish();
+			QueryCache.invalidateForStatement(query);
+		}
+		
+		return result;
+	}
+	
+	
+	//Commit and rollback failures are recorded like chunk failures, so rows committed before them keep their update counts.
+	//Only an exception before the first chunk escapes, nothing has been executed by then.
+	private static void executeChunkedBatch(String query, Connection conn, PreparedStatement ps, BatchOptions options, Object[][] arrayOfParameters, BatchResult result, boolean finalCommit) throws Exception {
+		conn.setAutoCommit(false);
+		
+		int rowCount = arrayOfParameters.length;
+		int chunkSize = options.getChunkSize();
+		int commitInterval = options.getCommitInterval();
+		
+		int chunksSinceCommit = 0;
+		
+		for (int chunkStart=0; chunkStart < rowCount; chunkStart += chunkSize) {
+			int chunkEnd = Math.min(chunkStart + chunkSize, rowCount);
+			
+			BatchChunkEvent event = BatchChunkEvent.begin(query, chunkStart, chunkEnd - chunkStart);
+			
+			try {
+				for (int row=chunkStart; row < chunkEnd; row++) {
+					setParams(ps, arrayOfParameters[row]);
+					
+					ps.addBatch();
+				}
+				
+				int[] updateCounts = ps.executeBatch();
+				
+				BatchChunkEvent.end(event, updateCounts);
+				
+				result.setUpdateCounts(chunkStart, updateCounts);
+				
+			} catch (Exception e) {
+				//Conversion errors from setParams fail the chunk the same way a driver error does
+				BatchChunkEvent.end(event, null);
+				
+				chunksSinceCommit = 0;
+				
+				if (rollbackUncommitted(conn, ps, options, result, chunkStart, chunkEnd, e)) {
+					continue;
+				}
+				
+				return;
+			}
+			
+			if (commitInterval > 0 && ++chunksSinceCommit >= commitInterval) {
+				chunksSinceCommit = 0;
+				
+				if (!commitUncommitted(conn, ps, options, result, chunkEnd)) {
+					return;
+				}
+			}
+		}
+		
+		if (finalCommit) {
+			commitUncommitted(conn, ps, options, result, rowCount);
+		}
+	}
+	
+	
+	private static boolean commitUncommitted(Connection conn, PreparedStatement ps, BatchOptions options, BatchResult result, int committedTo) {
+		int uncommittedFrom = result.getUncommittedFrom();
+		
+		try {
+			conn.commit();
+		} catch (Exception e) {
+			return rollbackUncommitted(conn, ps, options, result, uncommittedFrom, committedTo, e);
+		}
+		
+		result.addCommittedRows(committedTo - uncommittedFrom);
+		result.setUncommittedFrom(committedTo);
+		
+		return true;
+	}
+	
+	
+	//Everything since the last commit is lost with the failed rows, false when the batch has to stop
+	private static boolean rollbackUncommitted(Connection conn, PreparedStatement ps, BatchOptions options, BatchResult result, int failedFrom, int failedTo, Exception cause) {
+		result.addFailure(result.getUncommittedFrom(), failedFrom, failedTo, cause);
+		result.setUncommittedFrom(failedTo);
+		
+		try {
+			ps.clearBatch();
+			conn.rollback();
+		} catch (Exception e) {
+			//The connection cannot be trusted with the remaining rows
+			result.failUncommitted(e);
+			return false;
 		}
+		
+		if (options.isRollbackOnFailure()) {
+			result.markNotExecuted(failedTo);
+			result.setRolledBack(true);
+			return false;
+		}
+		
+		return true;
 	}
 	
 	
-	private static void executeBatchUpdate(String query, Connection conn, PreparedStatement ps, Object[][] arrayOfParameters) throws Exception {		
+	public static BatchResult executeParallelBatchUpdate(String query, BatchOptions options, Object[]... arrayOfParameters) {
+		return executeParallelBatch(query, false, options, arrayOfParameters);
+	}
+	
+	
+	public static BatchResult executeParallelBatchCallableUpdate(String query, BatchOptions options, Object[]... arrayOfParameters) {
+		return executeParallelBatch(query, true, options, arrayOfParameters);
+	}
+	
+	
+	private static BatchResult executeParallelBatch(String query, boolean callable, BatchOptions options, Object[][] arrayOfParameters) {
+		int rowCount = arrayOfParameters.length;
+		
+		BatchResult result = new BatchResult(rowCount);
+		
+		int partitionCount = Math.min(options.getPartitions(), Math.min(PARALLEL_BATCH_THREADS, rowCount));
+		
+		if (partitionCount == 0) {
+			return result;
+		}
+		
+		int partitionSize = (rowCount + partitionCount - 1) / partitionCount;
+		
+		BatchOptions partitionOptions = options;
+		
+		if (options.isAllOrNothing()) {
+			partitionOptions = new BatchOptions()
+					.setChunkSize(options.getChunkSize())
+					.setCommitInterval(0)
+					.setRollbackOnFailure(true);
+		}
+		
+		List<BatchPartition> partitions = new ArrayList<BatchPartition>();
+		List<Future<BatchPartition>> futures = new ArrayList<Future<BatchPartition>>();
+		
+		for (int start=0; start < rowCount; start += partitionSize) {
+			int end = Math.min(start + partitionSize, rowCount);
+			
+			BatchPartition partition = new BatchPartition(start, Arrays.copyOfRange(arrayOfParameters, start, end));
+			
+			BatchOptions executionOptions = partitionOptions;
+			
+			partitions.add(partition);
+			futures.add(getBatchExecutor().submit(() -> executePartition(query, callable, executionOptions, partition, !options.isAllOrNothing())));
+		}
+		
+		//Every partition is waited for, even after an interrupt, cancelling does not stop a running JDBC call
+		//and an abandoned partition would keep its transaction, its locks and its connection
+		boolean interrupted = false;
+		
+		for (int i=0; i<futures.size(); i++) {
+			BatchPartition partition = partitions.get(i);
+			
+			while (true) {
+				try {
+					futures.get(i).get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					//executePartition handles its own exceptions, only an Error gets here
+					partition.fail(e);
+					partition.close(false);
+					
+					handleCatch(e, "Parallel batch partition did not complete");
+					break;
+				}
+			}
+		}
+		
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		
+		if (options.isAllOrNothing()) {
+			completeAllOrNothing(partitions, interrupted);
+		}
+		
+		for (BatchPartition partition : partitions) {
+			result.merge(partition.result, partition.firstRow);
+		}
+		
+		QueryCache.invalidateForStatement(query);
+		
+		return result;
+	}
+	
+	
+	private static BatchPartition executePartition(String query, boolean callable, BatchOptions options, BatchPartition partition, boolean commit) {
+		StatementMetrics.Timer timer = callable ? StatementMetrics.startCallable(query) : StatementMetrics.start(query);
+		
+		try {
+			partition.conn = ConnectionPool.getPooledConnection();
+			timer.acquired();
+			
+			partition.ps = callable ? partition.conn.prepareCall(query) : partition.conn.prepareStatement(query);
+			timer.prepared();
+			
+			executeChunkedBatch(query, partition.conn, partition.ps, options, partition.rows, partition.result, commit);
+			timer.executed();
+			
+		} catch (Exception e) {
+			partition.fail(e);
+		} finally {
+			if (commit || partition.result.hasFailures()) {
+				partition.close(false);
+			}
+			
+			if (partition.result.hasFailures()) {
+				timer.failed();
+			}
+			
+			timer.updated(partition.result.getTotalUpdateCount());
+			timer.finish();
+		}
+		
+		return partition;
+	}
+	
+	
+	//An interrupted caller rolls back every partition, the same as a failed one
+	private static void completeAllOrNothing(List<BatchPartition> partitions, boolean interrupted) {
+		boolean success = !interrupted;
+		
+		for (BatchPartition partition : partitions) {
+			success &= !partition.result.hasFailures();
+		}
+		
+		for (BatchPartition partition : partitions) {
+			if (partition.result.hasFailures()) {
+				continue;
+			}
+			
+			if (!success) {
+				partition.fail(new SQLException(interrupted ? "Rolled back because the caller was interrupted" : "Rolled back because another partition of the batch failed"));
+			}
+			
+			partition.close(success);
+		}
+	}
+	
+	
+	private static ExecutorService getBatchExecutor() {
+		if (batchExecutor == null) {
+			synchronized (SQLStatementUtils.class) {
+				if (batchExecutor == null) {
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(PARALLEL_BATCH_THREADS, PARALLEL_BATCH_THREADS,
+							60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(PARALLEL_BATCH_THREADS * 4), runnable -> {
+								Thread thread = new Thread(runnable, "SQLStatementUtils-batch");
+								thread.setDaemon(true);
+								return thread;
+							}, new ThreadPoolExecutor.CallerRunsPolicy());
+					
+					executor.allowCoreThreadTimeOut(true);
+					
+					batchExecutor = executor;
+				}
+			}
+		}
+		
+		return batchExecutor;
+	}
+	
+	
+	private static class BatchPartition {
+		private final int firstRow;
+		private final Object[][] rows;
+		private final BatchResult result;
+		
+		private Connection conn;
+		private PreparedStatement ps;
+		
+		private BatchPartition(int firstRow, Object[][] rows) {
+			this.firstRow = firstRow;
+			this.rows = rows;
+			this.result = new BatchResult(rows.length);
+		}
+		
+		private void fail(Exception e) {
+			result.failUncommitted(e);
+			result.setRolledBack(true);
+		}
+		
+		private void close(boolean commit) {
+			try {
+				if (conn != null) {
+					if (commit) {
+						conn.commit();
+						result.addCommittedRows(rows.length);
+					} else if (!conn.getAutoCommit()) {
+						conn.rollback();
+					}
+				}
+			} catch (Exception e) {
+				fail(e);
+			} finally {
+				closeStreams(conn, ps);
+				conn = null;
+				ps = null;
+			}
+		}
+	}
+	
+	
+	private static void setParams(PreparedStatement ps, Object[] parameters) throws SQLException {
+		int index = 1;
+		
+		for (Object parameter : parameters) {
+			ps.setObject(index++, parameter);
+		}
+	}
+	
+	
+	private static long executeBatchUpdate(String query, Connection conn, PreparedStatement ps, Object[][] arrayOfParameters) throws Exception {		
 		conn.setAutoCommit(false);
 		
+		BatchChunkEvent event = BatchChunkEvent.begin(query, 0, arrayOfParameters.length);
+		
 		for (Object[] parameters : arrayOfParameters) {
 			addParams(conn, ps, parameters);
 			
 			ps.addBatch();
 		}
 		
-		ps.executeBatch();
+		int[] updateCounts = null;
+		
+		try {
+			updateCounts = ps.executeBatch();
+		} finally {
+			BatchChunkEvent.end(event, updateCounts);
+		}
 		
 		conn.commit();
+		
+		long updated = 0;
+		
+		for (int count : updateCounts) {
+			if (count > 0) {
+				updated += count;
+			}
+		}
+		
+		return updated;
 	}
 	
 	
@@ -203,6 +901,8 @@ public class SQLStatementUtils {
 	
 	
 	private static void handleCatch(Exception e, String message, Connection conn, PreparedStatement ps) {
+		StatementMetrics.recordError();
+		
 		System.out.println(message);
 		e.printStackTrace();
 		closeStreams(conn, ps);
@@ -236,32 +936,112 @@ public class SQLStatementUtils {
 	
 	
 	public static Object[] executeCallableStatement(String query, int[] outParameterIndexes, int[] outParameterTypes, Object[] parameters) {
+		StatementMetrics.Timer timer = StatementMetrics.startCallable(query);
+		
+		try {
+			Connection conn = getConnection();
+			timer.acquired();
+			
+			CallableStatement cs = prepareCallableStatement(conn, query);
+			
+			if (outParameterTypes != null && outParameterTypes.length > 0) {
+				registerOutParameters(conn, cs, outParameterIndexes, outParameterTypes);
+				
+				addParams(conn, cs, outParameterIndexes, parameters);
+			} else {
+				addParams(conn, cs, parameters);
+			}
+			
+			timer.prepared();
+			
+			executeStatement(cs);
+			timer.executed();
+			
+			Object[] outputs = getCallableStatementResults(conn, cs, outParameterIndexes);
+			timer.mapped(0);
+			
+			closeStreams(conn, cs);
+			
+			return outputs;
+		} finally {
+			timer.finish();
+			QueryCache.invalidateForCall();
+		}
+	}
+	
+	
+	//Binds the handle's precompiled layout, parameters are the IN and INOUT values in call order.
+	//Returns null when the call fails, like the other callable statement methods.
+	public static ProcedureResult executeProcedure(ProcedureHandle handle, Object... parameters) {
+		ProcedureHandle.Layout layout = handle.getLayout();
+		
+		checkProcedureParameters(handle, layout, parameters);
+		
+		StatementMetrics.Timer timer = StatementMetrics.startCallable(handle.getCall());
+		
 		Connection conn = getConnection();
+		CallableStatement cs = null;
 		
-		CallableStatement cs = prepareCallableStatement(conn, query);
+		ProcedureResult result = null;
 		
-		if (outParameterTypes != null && outParameterTypes.length > 0) {
-			registerOutParameters(conn, cs, outParameterIndexes, outParameterTypes);
+		try {
+			timer.acquired();
 			
-			addParams(conn, cs, outParameterIndexes, parameters);
-		} else {
-			addParams(conn, cs, parameters);
+			cs = prepareCallableStatement(conn, handle.getCall());
+			
+			layout.bind(cs, parameters);
+			timer.prepared();
+			
+			cs.execute();
+			timer.executed();
+			
+			timer.updated(cs);
+			
+			result = new ProcedureResult(layout, layout.read(cs));
+			timer.mapped(0);
+			
+		} catch (Exception e) {
+			handleCatch(e, "Could not execute procedure " + handle.getCall());
+		} finally {
+			closeStreams(conn, cs);
+			timer.finish();
+			QueryCache.invalidateForCall();
 		}
 		
-		executeStatement(cs);
+		return result;
+	}
+	
+	
+	//JDBC batches cannot return OUT values, so only handles without OUT parameters can be batched
+	public static BatchResult executeProcedureBatch(ProcedureHandle handle, BatchOptions options, Object[]... arrayOfParameters) {
+		ProcedureHandle.Layout layout = handle.getLayout();
+		
+		if (handle.hasOutParameters()) {
+			throw new IllegalArgumentException("Procedures with OUT parameters cannot be batched: " + handle.getCall());
+		}
 		
-		Object[] outputs = getCallableStatementResults(conn, cs, outParameterIndexes);
+		for (Object[] parameters : arrayOfParameters) {
+			checkProcedureParameters(handle, layout, parameters);
+		}
 		
-		closeStreams(conn, cs);
+		return executBatchCallableUpdate(handle.getCall(), options, arrayOfParameters);
+	}
+	
+	
+	private static void checkProcedureParameters(ProcedureHandle handle, ProcedureHandle.Layout layout, Object[] parameters) {
+		int expected = layout.inPositions.length;
+		int actual = parameters == null ? 0 : parameters.length;
 		
-		return outputs;
+		if (actual != expected) {
+			throw new IllegalArgumentException(handle.getCall() + " takes " + expected + " parameters but was given " + actual);
+		}
 	}
 	
 	
 	private static Connection getConnection() {
 		Connection conn = null;
 		try {
-			conn = DatabaseUtils.getConnection();
+			conn = ConnectionPool.getPooledConnection();
 		} catch (Exception e) {
 			handleCatch(e, "Couldn't obtain a connection", conn, null);
 		}
@@ -402,17 +1182,23 @@ public class SQLStatementUtils {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private static List getMapDataList(ResultSet rs, String[] columnNames, Class resultType) throws Exception {
+		if (resultType.isAssignableFrom(ResultRow.class)) {
+			return getResultRowList(rs, columnNames);
+		}
+		
 		List dataList = new ArrayList();
 		
 		Constructor constructor = resultType.getConstructor();
 		
+		ResultRow.Columns columns = new ResultRow.Columns(columnNames);
+		
+		int columnCount = columns.size();
+		
 		while (rs.next()) {
 			Map map = (Map)constructor.newInstance();
 			
-			for (String column : columnNames) {
-				Object value = rs.getObject(column);
-
-				map.put(column, value);
+			for (int i=0; i<columnCount; i++) {
+				map.put(columns.getName(i), rs.getObject(columns.getSourceColumn(i)));
 			}
 			
 			dataList.add(map);
@@ -421,41 +1207,44 @@ public class SQLStatementUtils {
 		return dataList;
 	}
 	
-
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private static List getObjectDataList(ResultSet rs, String[] columnNames, Class resultType) throws Exception {
-		List dataList = new ArrayList();
+	
+	private static List<ResultRow> getResultRowList(ResultSet rs, String[] columnNames) throws Exception {
+		List<ResultRow> dataList = new ArrayList<ResultRow>();
 		
-		Method[] methodNames = Utils.setMethodsForAttributes(resultType, columnNames);
+		ResultRow.Columns columns = new ResultRow.Columns(columnNames);
 		
-		Constructor constructor = resultType.getConstructor();
+		int columnCount = columns.size();
 		
-		int columnCount = columnNames.length;
-		
-		while(rs.next()) {
-			Object result = constructor.newInstance();
+		while (rs.next()) {
+			ResultRow row = new ResultRow(columns);
 			
 			for (int i=0; i<columnCount; i++) {
-				Object value = rs.getObject(columnNames[i]);
-				
-				Method currentMethod = methodNames[i];
-				
-				//Grab the first element only because the setter method only accepts one value
-				Class inputType = currentMethod.getParameterTypes()[0]; 
-				
-				value = Utils.cast(value, inputType);
-
-				methodNames[i].invoke(result, value);
+				row.set(i, rs.getObject(columns.getSourceColumn(i)));
 			}
 			
-			dataList.add(result);
+			dataList.add(row);
+		}
+		
+		return dataList;
+	}
+	
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static List getObjectDataList(ResultSet rs, String[] columnNames, Class resultType) throws Exception {
+		List dataList = new ArrayList();
+		
+		Class<?> type = resultType;
+		RowMapper<?> mapper = RowMapper.getMapper(type, columnNames);
+		
+		while(rs.next()) {
+			dataList.add(mapper.map(rs));
 		}
 		
 		return dataList;
 	}
 	
 
-	private static String[] getColumnNames(ResultSetMetaData rsmd) throws Exception {
+	static String[] getColumnNames(ResultSetMetaData rsmd) throws Exception {
 		int columnCount = rsmd.getColumnCount();
 		
 		String[] columnNames = new String[columnCount];
@@ -477,6 +1266,7 @@ public class SQLStatementUtils {
 	}
 	
 	
+	@Deprecated
 	public void closeStreams() {
 		closeStreams(conn, ps, rs);
 	}
@@ -488,9 +1278,9 @@ public class SQLStatementUtils {
 	
 	
 	private static void closeStreams(Connection conn, PreparedStatement ps, ResultSet rs) {
-		closeConnection(conn);
-		closeStatement(ps);
 		closeResultSet(rs);
+		closeStatement(ps);
+		closeConnection(conn);
 	}
 	
 	
@@ -524,7 +1314,9 @@ public class SQLStatementUtils {
 	}
 	
 	
+	//Last resort for the deprecated instance API, which leaves its result set open for the caller
 	@Override
+	@SuppressWarnings("deprecation")
 	public void finalize() {
 		closeStreams(conn, ps, rs);
 	}
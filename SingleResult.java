@@ -0,0 +1,79 @@
+package com.billings.utils;
+
+import java.util.NoSuchElementException;
+
+public class SingleResult<T> {
+
+	public enum Status { NONE, ONE, MANY }
+
+	//Shared by every type, neither holds a value
+	private static final SingleResult<Object> NONE = new SingleResult<Object>(Status.NONE, null);
+	private static final SingleResult<Object> MANY = new SingleResult<Object>(Status.MANY, null);
+
+	private final Status status;
+	private final T value;
+
+	private SingleResult(Status status, T value) {
+		this.status = status;
+		this.value = value;
+	}
+
+
+	@SuppressWarnings("unchecked")
+	static <T> SingleResult<T> none() {
+		return (SingleResult<T>)NONE;
+	}
+
+
+	@SuppressWarnings("unchecked")
+	static <T> SingleResult<T> many() {
+		return (SingleResult<T>)MANY;
+	}
+
+
+	static <T> SingleResult<T> of(T value) {
+		return new SingleResult<T>(Status.ONE, value);
+	}
+
+
+	public Status getStatus() {
+		return status;
+	}
+
+
+	public boolean isPresent() {
+		return status == Status.ONE;
+	}
+
+
+	public boolean isEmpty() {
+		return status == Status.NONE;
+	}
+
+
+	public boolean hasMany() {
+		return status == Status.MANY;
+	}
+
+
+	//Value of the single row, which may itself be null
+	public T get() {
+		if (status != Status.ONE) {
+			throw new NoSuchElementException(status == Status.NONE ? "Query returned no rows" : "Query returned more than one row");
+		}
+
+		return value;
+	}
+
+
+	public T orElse(T other) {
+		return status == Status.ONE ? value : other;
+	}
+
+
+	@Override
+	public String toString() {
+		return status == Status.ONE ? "SingleResult[" + value + "]" : "SingleResult." + status;
+	}
+
+}
@@ -0,0 +1,250 @@
+package com.billings.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+class StatementCache {
+
+	enum Kind { PREPARED, CALLABLE }
+
+	private final Connection connection;
+	private final int maxSize;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+
+	private final Map<Key, CachedStatement> statements;
+
+	StatementCache(Connection connection, int maxSize, LongAdder hits, LongAdder misses, LongAdder evictions) {
+		this.connection = connection;
+		this.maxSize = maxSize;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+
+		this.statements = new LinkedHashMap<Key, CachedStatement>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+				if (size() > StatementCache.this.maxSize) {
+					evict(eldest.getValue());
+					return true;
+				}
+
+				return false;
+			}
+		};
+	}
+
+
+	//owner is the pooled connection handed to the caller, statements report it from getConnection instead of the physical connection
+	synchronized PreparedStatement prepare(Kind kind, String sql, Connection owner) throws SQLException {
+		Key key = new Key(kind, sql);
+
+		CachedStatement cached = statements.get(key);
+
+		if (cached != null && !cached.inUse) {
+			hits.increment();
+
+			cached.statement.clearParameters();
+
+			return cached.checkout(owner);
+		}
+
+		misses.increment();
+
+		PreparedStatement statement = kind == Kind.CALLABLE ? connection.prepareCall(sql) : connection.prepareStatement(sql);
+
+		if (cached != null) {
+			//The cached statement is still open elsewhere on this connection, so hand out an uncached one
+			return (PreparedStatement)ConnectionPool.bindOwner(statement, kind == Kind.CALLABLE ? CallableStatement.class : PreparedStatement.class, owner);
+		}
+
+		cached = new CachedStatement(kind, statement);
+
+		statements.put(key, cached);
+
+		return cached.checkout(owner);
+	}
+
+
+	synchronized void releaseAll() {
+		for (CachedStatement cached : statements.values()) {
+			if (cached.inUse) {
+				cached.release();
+			}
+		}
+	}
+
+
+	synchronized void close() {
+		List<CachedStatement> open = new ArrayList<CachedStatement>(statements.values());
+
+		statements.clear();
+
+		for (CachedStatement cached : open) {
+			Utils.closeAutoCloseables(cached.statement);
+		}
+	}
+
+
+	private void evict(CachedStatement cached) {
+		evictions.increment();
+
+		cached.evicted = true;
+
+		if (!cached.inUse) {
+			Utils.closeAutoCloseables(cached.statement);
+		}
+	}
+
+
+	private synchronized void checkin(CachedStatement cached, Checkout checkout) {
+		if (cached.current == checkout) {
+			cached.release();
+		}
+	}
+
+
+	private static class Key {
+		private final Kind kind;
+		private final String sql;
+
+		private Key(Kind kind, String sql) {
+			this.kind = kind;
+			this.sql = sql;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key)obj;
+
+			return kind == other.kind && sql.equals(other.sql);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * kind.hashCode() + sql.hashCode();
+		}
+	}
+
+
+	private class CachedStatement {
+		private final Kind kind;
+		private final PreparedStatement statement;
+
+		private boolean inUse;
+		private boolean evicted;
+		private boolean maxRowsChanged;
+		private Checkout current;
+
+		private CachedStatement(Kind kind, PreparedStatement statement) {
+			this.kind = kind;
+			this.statement = statement;
+		}
+
+		private PreparedStatement checkout(Connection owner) {
+			inUse = true;
+			current = new Checkout(this, owner);
+
+			Class<?> type = kind == Kind.CALLABLE ? CallableStatement.class : PreparedStatement.class;
+
+			return (PreparedStatement)Proxy.newProxyInstance(StatementCache.class.getClassLoader(), new Class<?>[]{ type }, current);
+		}
+
+		private void release() {
+			Checkout checkout = current;
+
+			inUse = false;
+			current = null;
+
+			if (checkout != null) {
+				checkout.closed = true;
+				Utils.closeAutoCloseables(checkout.resultSet);
+			}
+
+			if (evicted) {
+				Utils.closeAutoCloseables(statement);
+				return;
+			}
+
+			try {
+				statement.clearBatch();
+
+				if (maxRowsChanged) {
+					statement.setMaxRows(0);
+					maxRowsChanged = false;
+				}
+			} catch (Exception e) {
+				evicted = true;
+				Utils.closeAutoCloseables(statement);
+			}
+		}
+	}
+
+
+	private class Checkout implements InvocationHandler {
+		private final CachedStatement cached;
+		private final Connection owner;
+		private volatile boolean closed;
+		private ResultSet resultSet;
+
+		private Checkout(CachedStatement cached, Connection owner) {
+			this.cached = cached;
+			this.owner = owner;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if (name.equals("close")) {
+				checkin(cached, this);
+				return null;
+			} else if (name.equals("isClosed")) {
+				return closed || cached.statement.isClosed();
+			} else if (name.equals("equals")) {
+				return proxy == args[0];
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			} else if (name.equals("toString")) {
+				return "Cached " + cached.statement;
+			} else if (closed) {
+				throw new SQLException("Statement has already been closed");
+			} else if (name.equals("getConnection")) {
+				return owner;
+			} else if (name.equals("setMaxRows")) {
+				cached.maxRowsChanged = true;
+			}
+
+			try {
+				Object result = method.invoke(cached.statement, args);
+
+				if (result instanceof ResultSet) {
+					resultSet = (ResultSet)result;
+				}
+
+				return result;
+
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+}
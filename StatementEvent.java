@@ -0,0 +1,61 @@
+package com.billings.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Enabled(false)
+@StackTrace(false)
+@Category({ "Billings Utils", "SQL" })
+abstract class StatementEvent extends jdk.jfr.Event {
+
+	@Label("SQL")
+	String sql;
+
+	@Label("Rows")
+	long rows;
+
+	@Label("Update Count")
+	long updateCount;
+
+	@Label("Failed")
+	boolean failed;
+
+	@Label("Acquire Time")
+	@Timespan
+	long acquireTime;
+
+	@Label("Prepare Time")
+	@Timespan
+	long prepareTime;
+
+	@Label("Execute Time")
+	@Timespan
+	long executeTime;
+
+	@Label("Map Time")
+	@Timespan
+	long mapTime;
+
+	void recordPhase(int phase, long nanos) {
+		switch (phase) {
+			case StatementMetrics.ACQUIRE:
+				acquireTime += nanos;
+				break;
+			case StatementMetrics.PREPARE:
+				prepareTime += nanos;
+				break;
+			case StatementMetrics.EXECUTE:
+				executeTime += nanos;
+				break;
+			case StatementMetrics.MAP:
+				mapTime += nanos;
+				break;
+			default:
+				break;
+		}
+	}
+
+}
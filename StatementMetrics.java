@@ -0,0 +1,502 @@
+package com.billings.utils;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class StatementMetrics implements StatementMetricsMXBean {
+
+	public static final String OBJECT_NAME = "com.billings.utils:type=StatementMetrics";
+
+	static final int ACQUIRE = 0;
+	static final int PREPARE = 1;
+	static final int EXECUTE = 2;
+	static final int MAP = 3;
+	static final int CLOSE = 4;
+
+	private static final int MAX_STATEMENTS = 1000;
+	private static final int MAX_CACHED_SQL = 10000;
+	private static final String OTHER_STATEMENTS = "(other statements)";
+
+	private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+	private static final StatementMetrics instance = new StatementMetrics();
+
+	private static final Map<String, String> normalizedSql = new ConcurrentHashMap<String, String>();
+
+	private static final ThreadLocal<Timer> currentTimer = new ThreadLocal<Timer>();
+
+	private static volatile boolean enabled;
+	private static boolean registered;
+
+	private final Map<String, Stats> statements = new ConcurrentHashMap<String, Stats>();
+
+	private StatementMetrics() {
+	}
+
+
+	public static StatementMetrics getInstance() {
+		return instance;
+	}
+
+
+	//Registers the MXBean on first use, until then every timer is a no-op
+	public static synchronized void enable() {
+		enabled = true;
+
+		if (!registered) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+				server.registerMBean(instance, new ObjectName(OBJECT_NAME));
+			} catch (InstanceAlreadyExistsException e) {
+				//Another copy of this library in the same JVM owns the name, metrics are still collected here
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+
+			registered = true;
+		}
+	}
+
+
+	public static void disable() {
+		enabled = false;
+	}
+
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+
+	static Timer start(String sql) {
+		return bind(sql, SQLStatementEvent.begin(sql));
+	}
+
+
+	static Timer startCallable(String sql) {
+		return bind(sql, CallableStatementEvent.begin(sql));
+	}
+
+
+	private static Timer bind(String sql, StatementEvent event) {
+		if (!enabled && event == null) {
+			return Timer.NOOP;
+		}
+
+		Timer timer = new Timer(enabled ? instance.statsFor(sql) : null, event, currentTimer.get());
+
+		currentTimer.set(timer);
+
+		return timer;
+	}
+
+
+	//For statements that outlive the calling method, errors are reported to the timer directly
+	static Timer startDetached(String sql) {
+		StatementEvent event = SQLStatementEvent.begin(sql);
+
+		if (!enabled && event == null) {
+			return Timer.NOOP;
+		}
+
+		return new Timer(enabled ? instance.statsFor(sql) : null, event, null);
+	}
+
+
+	//Called from SQLStatementUtils.handleCatch so swallowed errors still count against the statement
+	static void recordError() {
+		Timer timer = currentTimer.get();
+
+		if (timer != null) {
+			timer.failed();
+		}
+	}
+
+
+	private Stats statsFor(String sql) {
+		String key = normalize(sql);
+
+		Stats stats = statements.get(key);
+
+		if (stats == null) {
+			if (statements.size() >= MAX_STATEMENTS) {
+				key = OTHER_STATEMENTS;
+			}
+
+			stats = statements.computeIfAbsent(key, Stats::new);
+		}
+
+		return stats;
+	}
+
+
+	//Literals become ? and IN lists collapse, so statements differing only in values share one entry
+	static String normalize(String sql) {
+		String normalized = normalizedSql.get(sql);
+
+		if (normalized != null) {
+			return normalized;
+		}
+
+		StringBuilder builder = new StringBuilder(sql.length());
+
+		int length = sql.length();
+		boolean space = false;
+
+		for (int i=0; i<length; i++) {
+			char c = sql.charAt(i);
+
+			if (Character.isWhitespace(c)) {
+				space = builder.length() > 0;
+				continue;
+			}
+
+			if (space) {
+				builder.append(' ');
+				space = false;
+			}
+
+			if (c == '\'') {
+				i = skipQuoted(sql, i);
+				builder.append('?');
+			} else if (Character.isDigit(c) && !continuesIdentifier(builder)) {
+				while (i + 1 < length && (Character.isLetterOrDigit(sql.charAt(i+1)) || sql.charAt(i+1) == '.')) {
+					i++;
+				}
+
+				builder.append('?');
+			} else {
+				builder.append(c);
+			}
+		}
+
+		normalized = IN_LIST.matcher(builder).replaceAll("(?)");
+
+		if (normalizedSql.size() >= MAX_CACHED_SQL) {
+			normalizedSql.clear();
+		}
+
+		normalizedSql.put(sql, normalized);
+
+		return normalized;
+	}
+
+
+	private static int skipQuoted(String sql, int start) {
+		int i = start + 1;
+
+		while (i < sql.length()) {
+			if (sql.charAt(i) == '\'') {
+				if (i + 1 < sql.length() && sql.charAt(i+1) == '\'') {
+					i += 2;
+					continue;
+				}
+
+				return i;
+			}
+
+			i++;
+		}
+
+		return i;
+	}
+
+
+	private static boolean continuesIdentifier(StringBuilder builder) {
+		if (builder.length() == 0) {
+			return false;
+		}
+
+		char previous = builder.charAt(builder.length() - 1);
+
+		return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$';
+	}
+
+
+	@Override
+	public List<StatementStats> getStatements() {
+		List<StatementStats> snapshot = new ArrayList<StatementStats>();
+
+		for (Stats stats : statements.values()) {
+			snapshot.add(stats.snapshot());
+		}
+
+		return snapshot;
+	}
+
+
+	@Override
+	public List<StatementStats> getSlowestStatements(int limit) {
+		List<StatementStats> snapshot = getStatements();
+
+		snapshot.sort(Comparator.comparingDouble((StatementStats stats) -> stats.getTotal().getTotalMillis()).reversed());
+
+		return snapshot.subList(0, Math.min(limit, snapshot.size()));
+	}
+
+
+	@Override
+	public int getStatementCount() {
+		return statements.size();
+	}
+
+
+	@Override
+	public boolean isCollecting() {
+		return enabled;
+	}
+
+
+	@Override
+	public void reset() {
+		statements.clear();
+	}
+
+
+	//Feeds the statement's histograms when metrics are enabled and its flight recorder event when one is recording
+	static class Timer {
+		static final Timer NOOP = new Timer(null, null, null);
+
+		private final Stats stats;
+		private final StatementEvent event;
+		private final Timer previous;
+		private final boolean active;
+		private final long started;
+		private long mark;
+		private boolean failed;
+		private boolean finished;
+
+		private Timer(Stats stats, StatementEvent event, Timer previous) {
+			this.stats = stats;
+			this.event = event;
+			this.previous = previous;
+			this.active = stats != null || event != null;
+			this.started = active ? System.nanoTime() : 0;
+			this.mark = started;
+		}
+
+		void acquired() {
+			phase(ACQUIRE);
+		}
+
+		void prepared() {
+			phase(PREPARE);
+		}
+
+		void executed() {
+			phase(EXECUTE);
+		}
+
+		void mapped(long rows) {
+			if (active) {
+				phase(MAP);
+
+				if (stats != null) {
+					stats.rows.add(rows);
+				}
+
+				if (event != null) {
+					event.rows += rows;
+				}
+			}
+		}
+
+		void updated(long count) {
+			if (active && count > 0) {
+				if (stats != null) {
+					stats.updates.add(count);
+				}
+
+				if (event != null) {
+					event.updateCount += count;
+				}
+			}
+		}
+
+		void updated(Statement statement) {
+			if (active && statement != null) {
+				try {
+					updated(statement.getUpdateCount());
+				} catch (Exception e) {
+					//Update counts are best effort, the statement may already be closed after a failure
+				}
+			}
+		}
+
+		void failed() {
+			failed = true;
+		}
+
+		//Time since the last phase is recorded as close
+		void finish() {
+			if (!active || finished) {
+				return;
+			}
+
+			finished = true;
+
+			phase(CLOSE);
+
+			if (stats != null) {
+				stats.total.record(mark - started);
+				stats.executions.increment();
+
+				if (failed) {
+					stats.errors.increment();
+				}
+			}
+
+			if (event != null) {
+				event.failed = failed;
+				event.commit();
+			}
+
+			if (currentTimer.get() == this) {
+				if (previous == null) {
+					currentTimer.remove();
+				} else {
+					currentTimer.set(previous);
+				}
+			}
+		}
+
+		private void phase(int phase) {
+			if (active) {
+				long now = System.nanoTime();
+				long elapsed = now - mark;
+
+				mark = now;
+
+				if (stats != null) {
+					stats.phases[phase].record(elapsed);
+				}
+
+				if (event != null) {
+					event.recordPhase(phase, elapsed);
+				}
+			}
+		}
+	}
+
+
+	private static class Stats {
+		private final String sql;
+		private final Histogram[] phases = new Histogram[]{ new Histogram(), new Histogram(), new Histogram(), new Histogram(), new Histogram() };
+		private final Histogram total = new Histogram();
+		private final LongAdder executions = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder updates = new LongAdder();
+
+		private Stats(String sql) {
+			this.sql = sql;
+		}
+
+		private StatementStats snapshot() {
+			return new StatementStats(sql, executions.sum(), errors.sum(), rows.sum(), updates.sum(),
+					total.snapshot(), phases[ACQUIRE].snapshot(), phases[PREPARE].snapshot(),
+					phases[EXECUTE].snapshot(), phases[MAP].snapshot(), phases[CLOSE].snapshot());
+		}
+	}
+
+
+	//Log-linear buckets, 8 per power of two, which keeps any percentile within 12.5% of the recorded value
+	static class Histogram {
+		private static final int SUB_BITS = 3;
+		private static final int SUB_COUNT = 1 << SUB_BITS;
+
+		private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_COUNT);
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		void record(long nanos) {
+			long value = Math.max(0, nanos);
+
+			buckets.incrementAndGet(index(value));
+			sum.add(value);
+
+			long current;
+
+			while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+				//Retry until this value is published or a larger one is
+			}
+		}
+
+		static int index(long value) {
+			if (value < SUB_COUNT) {
+				return (int)value;
+			}
+
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int)((value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+
+			return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+		}
+
+		static long upperBound(int index) {
+			if (index < SUB_COUNT) {
+				return index;
+			}
+
+			int shift = index / SUB_COUNT - 1;
+			long lower = (long)(SUB_COUNT + index % SUB_COUNT) << shift;
+
+			return lower + (1L << shift) - 1;
+		}
+
+		long percentile(long[] counts, long total, double percentile) {
+			if (total == 0) {
+				return 0;
+			}
+
+			long target = Math.max(1, (long)Math.ceil(total * percentile));
+			long seen = 0;
+
+			for (int i=0; i<counts.length; i++) {
+				seen += counts[i];
+
+				if (seen >= target) {
+					return Math.min(upperBound(i), max.get());
+				}
+			}
+
+			return max.get();
+		}
+
+		LatencyStats snapshot() {
+			long[] counts = new long[buckets.length()];
+			long total = 0;
+
+			for (int i=0; i<counts.length; i++) {
+				counts[i] = buckets.get(i);
+				total += counts[i];
+			}
+
+			long totalNanos = sum.sum();
+
+			return new LatencyStats(total, toMillis(totalNanos), total == 0 ? 0 : toMillis(totalNanos) / total,
+					toMillis(percentile(counts, total, 0.5)), toMillis(percentile(counts, total, 0.95)),
+					toMillis(percentile(counts, total, 0.99)), toMillis(max.get()));
+		}
+
+		private static double toMillis(long nanos) {
+			return nanos / (double)TimeUnit.MILLISECONDS.toNanos(1);
+		}
+	}
+
+}
@@ -0,0 +1,17 @@
+package com.billings.utils;
+
+import java.util.List;
+
+public interface StatementMetricsMXBean {
+
+	List<StatementStats> getStatements();
+
+	List<StatementStats> getSlowestStatements(int limit);
+
+	int getStatementCount();
+
+	boolean isCollecting();
+
+	void reset();
+
+}
@@ -0,0 +1,87 @@
+package com.billings.utils;
+
+public class StatementStats {
+
+	private final String sql;
+	private final long executions;
+	private final long errors;
+	private final long rows;
+	private final long updateCount;
+	private final LatencyStats total;
+	private final LatencyStats acquire;
+	private final LatencyStats prepare;
+	private final LatencyStats execute;
+	private final LatencyStats map;
+	private final LatencyStats close;
+
+	StatementStats(String sql, long executions, long errors, long rows, long updateCount, LatencyStats total,
+			LatencyStats acquire, LatencyStats prepare, LatencyStats execute, LatencyStats map, LatencyStats close) {
+		this.sql = sql;
+		this.executions = executions;
+		this.errors = errors;
+		this.rows = rows;
+		this.updateCount = updateCount;
+		this.total = total;
+		this.acquire = acquire;
+		this.prepare = prepare;
+		this.execute = execute;
+		this.map = map;
+		this.close = close;
+	}
+
+
+	public String getSql() {
+		return sql;
+	}
+
+
+	public long getExecutions() {
+		return executions;
+	}
+
+
+	public long getErrors() {
+		return errors;
+	}
+
+
+	public long getRows() {
+		return rows;
+	}
+
+
+	public long getUpdateCount() {
+		return updateCount;
+	}
+
+
+	public LatencyStats getTotal() {
+		return total;
+	}
+
+
+	public LatencyStats getAcquire() {
+		return acquire;
+	}
+
+
+	public LatencyStats getPrepare() {
+		return prepare;
+	}
+
+
+	public LatencyStats getExecute() {
+		return execute;
+	}
+
+
+	public LatencyStats getMap() {
+		return map;
+	}
+
+
+	public LatencyStats getClose() {
+		return close;
+	}
+
+}
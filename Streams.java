@@ -0,0 +1,186 @@
+package com.billings.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import javax.servlet.http.HttpServletResponse;
+
+public class Streams {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final ArrayBlockingQueue<ByteBuffer> bufferPool = new ArrayBlockingQueue<ByteBuffer>(16);
+
+	//Reads to end of stream, multi-byte characters split across reads are carried over to the next decode
+	public static long read(InputStream in, Charset charset, Appendable content) throws IOException {
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		ReadableByteChannel channel = Channels.newChannel(in);
+		ByteBuffer bytes = borrowBuffer();
+		CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+		long total = 0;
+
+		try {
+			boolean endOfInput = false;
+
+			while (!endOfInput) {
+				int count = channel.read(bytes);
+
+				if (count < 0) {
+					endOfInput = true;
+				} else {
+					total += count;
+				}
+
+				bytes.flip();
+				drain(decoder.decode(bytes, chars, endOfInput), decoder, bytes, chars, content, endOfInput);
+				bytes.compact();
+			}
+
+			drain(decoder.flush(chars), decoder, null, chars, content, true);
+			appendChars(chars, content);
+		} finally {
+			returnBuffer(bytes);
+		}
+
+		return total;
+	}
+
+
+	private static void drain(CoderResult result, CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, Appendable content, boolean endOfInput) throws IOException {
+		while (result.isOverflow()) {
+			appendChars(chars, content);
+
+			result = bytes == null ? decoder.flush(chars) : decoder.decode(bytes, chars, endOfInput);
+		}
+
+		if (result.isError()) {
+			result.throwException();
+		}
+	}
+
+
+	private static void appendChars(CharBuffer chars, Appendable content) throws IOException {
+		chars.flip();
+		content.append(chars);
+		chars.clear();
+	}
+
+
+	public static byte[] readBytes(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+
+		transferTo(in, out);
+
+		return out.toByteArray();
+	}
+
+
+	public static long transferTo(InputStream in, OutputStream out) throws IOException {
+		ReadableByteChannel source = Channels.newChannel(in);
+		WritableByteChannel target = Channels.newChannel(out);
+		ByteBuffer buffer = borrowBuffer();
+
+		long total = 0;
+
+		try {
+			int count;
+
+			while ((count = source.read(buffer)) >= 0) {
+				total += count;
+
+				buffer.flip();
+
+				while (buffer.hasRemaining()) {
+					target.write(buffer);
+				}
+
+				buffer.clear();
+			}
+		} finally {
+			returnBuffer(buffer);
+		}
+
+		return total;
+	}
+
+
+	public static long transferTo(Blob blob, OutputStream out) throws IOException, SQLException {
+		InputStream in = null;
+
+		try {
+			in = blob.getBinaryStream();
+
+			return transferTo(in, out);
+		} finally {
+			Utils.closeAutoCloseables(in);
+			free(blob);
+		}
+	}
+
+
+	public static long transferTo(Blob blob, HttpServletResponse response, String contentType) throws IOException, SQLException {
+		if (contentType != null) {
+			response.setContentType(contentType);
+		}
+
+		response.setContentLengthLong(blob.length());
+
+		return transferTo(blob, response.getOutputStream());
+	}
+
+
+	static void free(Blob blob) {
+		try {
+			blob.free();
+		} catch(SQLException | AbstractMethodError e) {
+			//Drivers predating JDBC 4 release the locator when the result set closes
+		}
+	}
+
+
+	static void free(Clob clob) {
+		try {
+			clob.free();
+		} catch(SQLException | AbstractMethodError e) {
+			//Drivers predating JDBC 4 release the locator when the result set closes
+		}
+	}
+
+
+	private static ByteBuffer borrowBuffer() {
+		ByteBuffer buffer = bufferPool.poll();
+
+		//Heap buffers, the stream channels copy through a byte array anyway and a direct buffer only adds a second copy
+		if (buffer == null) {
+			buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		}
+
+		return buffer;
+	}
+
+
+	private static void returnBuffer(ByteBuffer buffer) {
+		buffer.clear();
+		bufferPool.offer(buffer);
+	}
+
+}
@@ -1,18 +1,21 @@
 package com.billings.utils;
 
 import java.io.InputStream;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.Blob;
 import java.sql.ResultSet;
-import java.sql.Timestamp;
 import java.util.Base64;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.Part;
 
@@ -21,6 +24,7 @@ import com.billings.wrappers.Encoder;
 public class Utils {
 	
 	private static Set<Integer> invalidCharCodes;
+	private static boolean[] invalidCharTable;
 	
 	public static Method[] getMethodsForAttributes(Class type, String... attributes) throws Exception {
 		return findMethodsForAttributes(type, "get", attributes);
@@ -34,24 +38,12 @@ public class Utils {
 	
 	private static Method[] findMethodsForAttributes(Class type, String accessType, String... attributes) throws Exception {
     	int attributeCount = attributes.length;
-    	int accessTypeLength = accessType.length();
 
     	Method[] associatedMethods = new Method[attributeCount];
     	
-    	Method[] allMethodsInObject = type.getMethods();
+    	PropertyIndex index = PropertyIndex.forClass(type);
     	
-    	Map<String, Method> methodMap = new HashMap<String, Method>();
-    	
-    	for (Method method : allMethodsInObject) {
-    		String methodName = method.getName();
-    		
-    		if (methodName.length() > accessTypeLength && methodName.startsWith(accessType)) {
-    			String trimmedName = methodName.substring(accessTypeLength);
-    			String standardizedName = standardize(trimmedName);
-    			
-    			methodMap.put(standardizedName, method);
-    		}
-    	}
+    	Map<String, Method> methodMap = accessType.equals("get") ? index.getGetters() : index.getSetters();
     	
     	for (int i=0; i<attributeCount; i++) {
     		String attribute = attributes[i];
@@ -72,31 +64,66 @@ public class Utils {
 	
 	
 	private static String standardize(String str) {
-		str = str.replaceAll("[^A-Za-z0-9]", "");
-		str = str.toLowerCase();
-		
-		return str;
+		return PropertyIndex.standardize(str);
 	}
 	
 	
 	public static void printBeanAsJSON(Object bean, HttpServletResponse response, String... attributes) {
+		printBeanAsJSON(bean, null, response, attributes);
+	}
+	
+	
+	public static void printBeanAsJSON(Object bean, HttpServletRequest request, HttpServletResponse response, String... attributes) {
+		JSONWriter json = null;
+		
 		try {
-			String json = createJSON(bean, attributes);
-			printJSON(json, response);
+			json = createResponseWriter(request, response);
+			
+			serializeBean(json, bean, attributes);
+			json.endLine();
 			
 		} catch(Exception e) {
+			abortResponse(json, response);
 			printJSONException(e);
+		} finally {
+			closeAutoCloseables(json);
 		}
 	}
 	
 	
+	//The raw signature is kept for existing callers, the map is read as String keys like every other JSON map here
+	@SuppressWarnings("unchecked")
 	public static void printMapAsJSON(Map map, HttpServletResponse response) {
+		printMapAsJSON(map, null, response);
+	}
+	
+	
+	public static void printMapAsJSON(Map<String, Object> map, HttpServletRequest request, HttpServletResponse response) {
+		JSONWriter json = null;
+		
 		try {
-			String json = createJSON(map);
-			printJSON(json, response);
+			json = createResponseWriter(request, response);
+			
+			serializeMap(json, map);
+			json.endLine();
 		
 		} catch(Exception e) {
+			abortResponse(json, response);
 			printJSONException(e);
+		} finally {
+			closeAutoCloseables(json);
+		}
+	}
+	
+	
+	//An error before anything was sent becomes a 500 with no body instead of a truncated document
+	static void abortResponse(JSONWriter json, HttpServletResponse response) {
+		if (json != null) {
+			json.abort();
+		}
+		
+		if (!response.isCommitted()) {
+			response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 		}
 	}
 	
@@ -108,260 +135,273 @@ public class Utils {
 	
 	
 	public static void printListAsJSON(List dataList, HttpServletResponse response, String... attributes) {
+		printListAsJSON(dataList, null, response, attributes);
+	}
+	
+	
+	public static void printListAsJSON(List<?> dataList, HttpServletRequest request, HttpServletResponse response, String... attributes) {
+		JSONWriter json = null;
+		
 		try {
-			String json = createJSONArray(dataList, attributes);
-			printJSON(json, response);
+			json = createResponseWriter(request, response);
+			
+			serializeBeanList(json, dataList, attributes);
+			json.endLine();
 			
 		} catch(Exception e) {
+			abortResponse(json, response);
 			printJSONException(e);
+		} finally {
+			closeAutoCloseables(json);
 		}
 	}
 	
 	
 	public static void printListAsJSON(List<Map<String, Object>> dataList, HttpServletResponse response) {
+		printListAsJSON(dataList, null, response);
+	}
+	
+	
+	public static void printListAsJSON(List<Map<String, Object>> dataList, HttpServletRequest request, HttpServletResponse response) {
+		JSONWriter json = null;
+		
 		try {
-			String json = createJSONArray(dataList);
-			printJSON(json, response);
+			json = createResponseWriter(request, response);
+			
+			serializeMapList(json, dataList);
+			json.endLine();
 			
 		} catch(Exception e) {
+			abortResponse(json, response);
 			printJSONException(e);
+		} finally {
+			closeAutoCloseables(json);
 		}
 	}
 	
 	
-	public static String createJSON(Object data, String... attributes) throws Exception {
-		Class type = data.getClass();
+	static JSONWriter createResponseWriter(HttpServletRequest request, HttpServletResponse response) {
+		response.setCharacterEncoding("UTF-8");
 		
-		Method[] methods = getMethodsForAttributes(type, attributes);
-		Object[] values = getValueArray(data, methods);
+		String encoding = request == null ? null : ResponseCompression.negotiate(request, response);
 		
-		StringBuffer json = createJSON(attributes, values);
-		
-		return json.toString();
+		return new JSONWriter(contentLength -> ResponseCompression.open(response, encoding, contentLength));
 	}
 	
 	
-	private static Object[] getValueArray(Object data, Method[] methods) throws Exception {
-		int valueSize = methods.length;
-		
-		Object[] values = new Object[valueSize];
+	public static String createJSON(Object data, String... attributes) throws Exception {
+		StringWriter json = new StringWriter();
 		
-		for (int i=0; i<valueSize; i++) {
-			values[i] = methods[i].invoke(data);
-		}
+		writeJSON(data, json, attributes);
 		
-		return values;
+		return json.toString();
 	}
 	
 	
 	public static String createJSON(Map<String, Object> map) throws Exception {
-		String[] keys = getMapKeys(map);
-
-		Object[] values = getValueArray(map, keys);
+		StringWriter json = new StringWriter();
 		
-		StringBuffer json = createJSON(keys, values);
+		writeJSON(map, json);
 		
 		return json.toString();
 	}
 	
 	
-	private static String[] getMapKeys(Map<String, Object> map) {
-		Set<String> keySet = map.keySet();
+	public static String createJSONArray(List<Map<String, Object>> dataList) throws Exception {
+		if (dataList == null || dataList.size() == 0) {
+			return null;
+		} 
 		
-		String[] keys = (String[])keySet.toArray();
+		StringWriter jsonArray = new StringWriter();
 		
-		return keys;
+		writeJSONArray(dataList, jsonArray);
+		
+		return jsonArray.toString();
 	}
 	
 	
-	private static Object[] getValueArray(Map<String, Object> data, Object[] keys) throws Exception {
-		int valueSize = keys.length;
+	public static String createJSONArray(List dataList, String... attributes) throws Exception {
+		if (dataList == null || dataList.size() == 0) {
+			return null;
+		}
 		
-		Object[] values = new Object[valueSize];
+		StringWriter jsonArray = new StringWriter();
 		
-		for (int i=0; i<valueSize; i++) {
-			values[i] = data.get(keys[i]);
-		}
+		writeJSONArray(dataList, jsonArray, attributes);
 		
-		return values;
+		return jsonArray.toString();
 	}
 	
 	
-	public static String createJSONArray(List<Map<String, Object>> dataList) throws Exception {
-		if (dataList == null || dataList.size() == 0) {
-			return null;
-		} 
-		
-		Map<String, Object> firstMap = dataList.get(0);
-		
-		String[] keys = getMapKeys(firstMap);
+	public static void writeJSON(Object data, Writer writer, String... attributes) throws Exception {
+		JSONWriter json = new JSONWriter(writer);
 		
-		StringBuffer jsonArray = new StringBuffer("[");
+		serializeBean(json, data, attributes);
 		
-		for (int i=0; i<dataList.size(); i++) {
-			if (i > 0) {
-				jsonArray.append(",");
-			} 
-			
-			Map data = dataList.get(i);
-			
-			Object[] values = getValueArray(data, keys);
-			
-			StringBuffer json = createJSON(keys, values);
-			
-			jsonArray.append(json);
-		}
+		json.flush();
+	}
+	
+	
+	public static void writeJSON(Map<String, Object> map, Writer writer) throws Exception {
+		JSONWriter json = new JSONWriter(writer);
 		
-		jsonArray.append("]");
+		serializeMap(json, map);
 		
-		return jsonArray.toString();
+		json.flush();
 	}
 	
 	
-	public static String createJSONArray(List dataList, String... attributes) throws Exception {
-		if (dataList == null || dataList.size() == 0) {
-			return null;
-		}
+	public static void writeJSONArray(List<Map<String, Object>> dataList, Writer writer) throws Exception {
+		JSONWriter json = new JSONWriter(writer);
 		
-		StringBuffer jsonArray = new StringBuffer("[");
+		serializeMapList(json, dataList);
 		
-		Class type = dataList.get(0).getClass();
+		json.flush();
+	}
+	
+	
+	public static void writeJSONArray(List<?> dataList, Writer writer, String... attributes) throws Exception {
+		JSONWriter json = new JSONWriter(writer);
 		
-		Method[] methods = getMethodsForAttributes(type, attributes);
+		serializeBeanList(json, dataList, attributes);
 		
-		for (int i=0; i<dataList.size(); i++) {
-			if (i > 0) {
-				jsonArray.append(",");
-			} 
-
-			Object data = dataList.get(i);
-			
-			Object[] values = getValueArray(data, methods);
-			
-			StringBuffer json = createJSON(attributes, values);
-			
-			jsonArray.append(json);
-		}
+		json.flush();
+	}
+	
+	
+	private static void serializeBean(JSONWriter json, Object data, String[] attributes) throws Exception {
+		BeanSerializer serializer = BeanSerializer.forClass(data.getClass(), attributes);
 		
-		jsonArray.append("]");
+		json.describe("Bean", data.getClass(), 1);
 		
-		return jsonArray.toString();
+		serializer.write(json, data);
 	}
 	
 	
-	private static StringBuffer createJSON(String[] keys, Object[] values) throws Exception {
-		StringBuffer json = new StringBuffer("{");
+	private static void serializeMap(JSONWriter json, Map<String, Object> map) throws Exception {
+		json.describe("Map", 1);
 		
-		for (int i=0; i<keys.length; i++) {
-			if (i != 0) {
-				json.append(", ");
-			}
+		writeJSONObject(json, map, getMapKeys(map));
+	}
+	
+	
+	private static void serializeMapList(JSONWriter json, List<Map<String, Object>> dataList) throws Exception {
+		if (dataList == null || dataList.size() == 0) {
+			json.writeNull();
+		} else {
+			String[] keys = getMapKeys(dataList.get(0));
 			
-			String key = keys[i];
-			Object objValue = values[i];
+			json.describe("List<Map>", dataList.size());
 			
-			String value = (String) cast(objValue, String.class);
+			json.beginArray();
 			
-			value = sanitizeString(value);
+			for (Map<String, Object> data : dataList) {
+				writeJSONObject(json, data, keys);
+			}
+			
+			json.endArray();
+		}
+	}
+	
+	
+	private static void serializeBeanList(JSONWriter json, List<?> dataList, String[] attributes) throws Exception {
+		if (dataList == null || dataList.size() == 0) {
+			json.writeNull();
+		} else {
+			BeanSerializer serializer = BeanSerializer.forClass(dataList.get(0).getClass(), attributes);
 			
-			//replaces all instances of '\' with '\\'
-			//extra slashes are needed to provide proper output
-			value = value.replaceAll("\\\\", "\\\\\\\\");
+			json.describe("List", dataList.get(0).getClass(), dataList.size());
 			
-			//replaces instances of '"' with '\"'
-			value = value.replaceAll("\"", "\\\\\"");
+			json.beginArray();
 			
-			String input = String.format("\"%s\": \"%s\"", key, value);
+			for (Object data : dataList) {
+				serializer.write(json, data);
+			}
 			
-			json.append(input);
+			json.endArray();
 		}
+	}
+	
+	
+	private static void writeJSONObject(JSONWriter json, Map<String, Object> data, String[] keys) throws Exception {
+		json.beginObject();
 		
-		json.append("}");
-		
+		for (String key : keys) {
+			json.writeField(key, data.get(key));
+		}
 		
-		return json;
+		json.endObject();
 	}
 	
 	
-	public static Object cast(Object target, Class castType) {
-		if (target == null || target.getClass() == castType) {
-			return target;
+	private static String[] getMapKeys(Map<String, Object> map) {
+		Set<String> keySet = map.keySet();
 		
-		} else if (target.getClass().isPrimitive()) {
-			return castInboundPrimitive(target, castType);
+		String[] keys = keySet.toArray(new String[keySet.size()]);
 		
-		} else {
-			return castInboundObject(target, castType);
-		}
+		return keys;
 	}
 	
 	
-	private static Object castInboundPrimitive(Object target, Class castType) {
-		Object objectifiedTarget = null;
-		
-		Class targetClass = target.getClass();
-		
-		if (targetClass == int.class) {
-			objectifiedTarget = (Integer)target;
-		} else if (targetClass == boolean.class) {
-			objectifiedTarget = (Boolean)target;
-		} else if (targetClass == char.class) {
-			objectifiedTarget = (Character)target;
-		} else if (targetClass == byte.class) {
-			objectifiedTarget = (Byte)target;
-		} else if (targetClass == short.class) {
-			objectifiedTarget = (Short)target;
-		} else if (targetClass == long.class) {
-			objectifiedTarget = (Long)target;
-		} else if (targetClass == float.class) {
-			objectifiedTarget = (Float)target;
-		} else if (targetClass == double.class) {
-			objectifiedTarget = (Double)target;
+	public static Object cast(Object target, Class castType) {
+		if (target == null || target.getClass() == castType) {
+			return target;
 		}
 		
-		return castInboundObject(objectifiedTarget, castType);
+		return Converters.convert(target, castType);
 	}
 	
 	
-	private static Object castInboundObject(Object target, Class castType) {
-		String modifiedTarget = null;
+	public static String sanitizeString(String string) {
+		if (string == null) {
+			return "";
+		}
 		
-		if (target.getClass() != Timestamp.class) {
-			modifiedTarget = target.toString();
-		} else {
-			modifiedTarget = ((Timestamp)target).toString();
+		boolean[] invalidCharacters = getInvalidCharTable();
+		
+		int length = string.length();
+		int index = 0;
+		
+		while (index < length && !isInvalid(invalidCharacters, string.charAt(index))) {
+			index++;
 		}
 		
-		if (castType == String.class) { 
-			return modifiedTarget;
-		} else if (castType == Integer.class || castType == int.class) { 
-			return Integer.parseInt(modifiedTarget);
-		} else if (castType == Timestamp.class) { 
-			return Timestamp.valueOf(modifiedTarget);
-		} else if (castType == Double.class || castType == double.class) { 
-			return Double.parseDouble(modifiedTarget);
-		} else if (castType == Float.class || castType == float.class) { 
-			return Float.parseFloat(modifiedTarget);
-		} else if (castType == Long.class || castType == long.class) { 
-			return Long.parseLong(modifiedTarget);
-		} else if (castType == Boolean.class || castType == boolean.class) { 
-			return Boolean.valueOf(modifiedTarget);
-		} else if (castType == java.sql.Date.class) { 
-			return java.sql.Date.valueOf(modifiedTarget);
-		} else if (castType == java.util.Date.class) { 
-			return java.util.Date.parse(modifiedTarget);
-		} else if (castType == Character.class || castType == char.class) { 
-			return modifiedTarget.toCharArray()[0];
-		} else { 
-			return target;
+		if (index == length) {
+			return string;
+		}
+		
+		StringBuilder sanitizedText = new StringBuilder(length);
+		sanitizedText.append(string, 0, index);
+		
+		for (; index < length; index++) {
+			char c = string.charAt(index);
+			
+			if (!isInvalid(invalidCharacters, c)) {
+				sanitizedText.append(c);
+			}
 		}
+		
+		return sanitizedText.toString();
 	}
 	
 	
-	public static String sanitizeString(String string) {
-		Set<Integer> invalidCharacters = getInvalidCharCodes();
+	private static boolean isInvalid(boolean[] invalidCharacters, char c) {
+		return c < invalidCharacters.length && invalidCharacters[c];
+	}
+	
+	
+	static boolean[] getInvalidCharTable() {
+		if (invalidCharTable == null) {
+			boolean[] table = new boolean[256];
+			
+			for (int charCode : getInvalidCharCodes()) {
+				table[charCode] = true;
+			}
+			
+			invalidCharTable = table;
+		}
 		
-		return sanitizeString(invalidCharacters, string);
+		return invalidCharTable;
 	}
 	
 	
@@ -414,17 +454,29 @@ public class Utils {
 	
 	
 	public static void printJSON(String json, HttpServletResponse response) {
-		PrintWriter pw = null;
+		OutputStream out = null;
     	
     	try {
-	    	pw = response.getWriter();
-	    	pw.println(json);
+    		JSONSerializationEvent event = JSONSerializationEvent.start();
+    		
+    		byte[] bytes = (json + "\n").getBytes(StandardCharsets.UTF_8);
+    		
+    		response.setCharacterEncoding("UTF-8");
+    		response.setContentLength(bytes.length);
+    		
+	    	out = response.getOutputStream();
+	    	out.write(bytes);
+	    	
+	    	if (event != null) {
+	    		event.content = "String";
+	    		event.characters = json.length() + 1;
+	    		event.bytes = bytes.length;
+	    		event.commit();
+	    	}
     	} catch(Exception e) {
     		e.printStackTrace();
     	} finally {
-    		if (pw != null) {
-    			pw.close();
-    		}
+    		closeAutoCloseables(out);
     	}
 	}
 	
@@ -442,21 +494,25 @@ public class Utils {
 	}
 	
 	
+	//The whole stream is handed to the encoder at once so multi-byte characters are never split
 	public static StringBuffer readFile(InputStream in, Encoder encoder) throws Exception {
 		StringBuffer content = new StringBuffer();
 		
 		try {
-			int byteArraySize = 0;
-			
-			while ((byteArraySize = in.available()) > 0) {			
-				byte[] bytes = new byte[byteArraySize];
-				
-				in.read(bytes);
-				
-				content.append(encoder.encode(bytes));
-			}
-		} catch(Exception e) {
-			throw e;
+			content.append(encoder.encode(Streams.readBytes(in)));
+		} finally {
+			in.close();
+		}
+		
+		return content;
+	}
+	
+	
+	public static StringBuffer readFile(InputStream in, Charset charset) throws Exception {
+		StringBuffer content = new StringBuffer();
+		
+		try {
+			Streams.read(in, charset, content);
 		} finally {
 			in.close();
 		}
@@ -467,15 +523,15 @@ public class Utils {
 	
 	public static StringBuffer readBlob(ResultSet rs, String parameter) throws Exception {
 		InputStream in = null;
-		StringBuffer content = new StringBuffer();
+		StringBuffer content = null;
 		
 		try {
 			Blob blob = rs.getBlob(parameter);
+			//Blob length is in bytes and the buffer grows as needed, so only small blobs are sized up front
+			content = new StringBuffer((int)Math.min(blob.length(), 16 * 1024));
 			in = blob.getBinaryStream();
 			
-			content.append(Utils.readFile(in, (byte[] bytes) -> {
-				return new String(bytes, "UTF-8");
-			}));
+			Streams.read(in, StandardCharsets.UTF_8, content);
 		} finally {
 			closeAutoCloseables(in);
 		}
@@ -484,6 +540,27 @@ public class Utils {
 	}
 	
 	
+	//Caller must close the handle, large content is held in a temp file until then
+	public static BlobHandle readBlobHandle(ResultSet rs, String parameter) throws Exception {
+		return BlobHandle.read(rs.getBlob(parameter));
+	}
+	
+	
+	public static BlobHandle readClobHandle(ResultSet rs, String parameter) throws Exception {
+		return BlobHandle.read(rs.getClob(parameter));
+	}
+	
+	
+	public static long writeBlob(ResultSet rs, String parameter, OutputStream out) throws Exception {
+		return Streams.transferTo(rs.getBlob(parameter), out);
+	}
+	
+	
+	public static long printBlob(ResultSet rs, String parameter, HttpServletResponse response, String contentType) throws Exception {
+		return Streams.transferTo(rs.getBlob(parameter), response, contentType);
+	}
+	
+	
 	public static boolean hasInputs(String... inputs) {
 		for (String input : inputs) {
 			if (input == null || input.isEmpty()) 
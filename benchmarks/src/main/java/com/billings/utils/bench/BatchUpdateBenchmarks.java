@@ -0,0 +1,69 @@
+package com.billings.utils.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.billings.utils.SQLStatementUtils;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class BatchUpdateBenchmarks {
+
+	@Param({ "10", "100", "1000" })
+	public int batchSize;
+
+	private Object[][] batch;
+
+	@Setup
+	public void setUp() {
+		BenchmarkDatabase.open();
+
+		batch = BenchmarkDatabase.rows(batchSize, 0);
+
+		//SQLStatementUtils reports batch failures only on stdout, so check one batch actually lands
+		SQLStatementUtils.executeBatchUpdate(BenchmarkDatabase.INSERT, batch);
+
+		Long inserted = SQLStatementUtils.querySingleCell("select count(*) from bench_invoice", Long.class).orElse(null);
+
+		if (inserted == null || inserted != batchSize) {
+			throw new IllegalStateException("Expected " + batchSize + " inserted rows but found " + inserted);
+		}
+	}
+
+
+	//Emptied before every iteration so the table size, and with it the index cost, stays comparable between iterations
+	@Setup(Level.Iteration)
+	public void emptyTable() {
+		SQLStatementUtils.executeUpdate(BenchmarkDatabase.TRUNCATE);
+	}
+
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkDatabase.close();
+	}
+
+
+	@Benchmark
+	public void executeBatchUpdate() {
+		SQLStatementUtils.executeBatchUpdate(BenchmarkDatabase.INSERT, batch);
+	}
+
+}
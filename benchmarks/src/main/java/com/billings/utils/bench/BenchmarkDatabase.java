@@ -0,0 +1,48 @@
+package com.billings.utils.bench;
+
+import java.math.BigDecimal;
+import java.sql.DriverManager;
+import java.sql.Timestamp;
+
+import com.billings.utils.ConnectionPool;
+import com.billings.utils.SQLStatementUtils;
+
+//An embedded H2 database installed as the default pool, every benchmark fork gets its own in-memory copy.
+//The table has no primary key so batch benchmarks can insert the same prebuilt rows on every invocation.
+class BenchmarkDatabase {
+
+	static final String URL = "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+
+	static final String INSERT = "insert into bench_invoice (id, name, amount, created, active) values (?, ?, ?, ?, ?)";
+
+	//Quoted aliases keep the labels lower case so they match the bean's properties
+	static final String SELECT = "select id as \"id\", name as \"name\", amount as \"amount\", created as \"created\", active as \"active\" from bench_invoice where id < ?";
+
+	static final String TRUNCATE = "truncate table bench_invoice";
+
+	static void open() {
+		ConnectionPool.setDefault(new ConnectionPool(() -> DriverManager.getConnection(URL), 1, 4));
+
+		SQLStatementUtils.executeUpdate("create table if not exists bench_invoice (id int, name varchar(100), amount decimal(12,2), created timestamp, active boolean)");
+		SQLStatementUtils.executeUpdate(TRUNCATE);
+	}
+
+
+	static void close() {
+		ConnectionPool.setDefault(null);
+	}
+
+
+	static Object[][] rows(int count, int firstId) {
+		Object[][] rows = new Object[count][];
+
+		for (int i=0; i<count; i++) {
+			int id = firstId + i;
+
+			rows[i] = new Object[]{ id, "Customer " + id, BigDecimal.valueOf(id * 137L, 2), new Timestamp(1500000000000L + id * 60000L), id % 3 != 0 };
+		}
+
+		return rows;
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.billings.utils.bench;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class InvoiceBean {
+
+	static final String[] ATTRIBUTES = { "id", "name", "amount", "created", "active" };
+
+	private int id;
+	private String name;
+	private BigDecimal amount;
+	private Timestamp created;
+	private Boolean active;
+
+	static InvoiceBean create(int id) {
+		InvoiceBean bean = new InvoiceBean();
+
+		bean.setId(id);
+		bean.setName("Customer \"" + id + "\" Ltd");
+		bean.setAmount(BigDecimal.valueOf(id * 137L, 2));
+		bean.setCreated(new Timestamp(1500000000000L + id * 60000L));
+		bean.setActive(id % 3 != 0);
+
+		return bean;
+	}
+
+
+	Map<String, Object> toMap() {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+
+		map.put("id", id);
+		map.put("name", name);
+		map.put("amount", amount);
+		map.put("created", created);
+		map.put("active", active);
+
+		return map;
+	}
+
+
+	public int getId() {
+		return id;
+	}
+
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+
+	public String getName() {
+		return name;
+	}
+
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+
+	public void setAmount(BigDecimal amount) {
+		this.amount = amount;
+	}
+
+
+	public Timestamp getCreated() {
+		return created;
+	}
+
+
+	public void setCreated(Timestamp created) {
+		this.created = created;
+	}
+
+
+	public Boolean getActive() {
+		return active;
+	}
+
+
+	public void setActive(Boolean active) {
+		this.active = active;
+	}
+
+}
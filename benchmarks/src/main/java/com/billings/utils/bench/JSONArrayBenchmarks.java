@@ -0,0 +1,62 @@
+package com.billings.utils.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.billings.utils.Utils;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class JSONArrayBenchmarks {
+
+	@Param({ "10", "1000" })
+	public int size;
+
+	private List<InvoiceBean> beans;
+	private List<Map<String, Object>> maps;
+
+	@Setup
+	public void setUp() {
+		beans = new ArrayList<InvoiceBean>();
+		maps = new ArrayList<Map<String, Object>>();
+
+		for (int i=0; i<size; i++) {
+			InvoiceBean bean = InvoiceBean.create(i);
+
+			beans.add(bean);
+			maps.add(bean.toMap());
+		}
+	}
+
+
+	@Benchmark
+	public void createJSONArrayFromBeans(Blackhole blackhole) throws Exception {
+		blackhole.consume(Utils.createJSONArray(beans, InvoiceBean.ATTRIBUTES));
+	}
+
+
+	@Benchmark
+	public void createJSONArrayFromMaps(Blackhole blackhole) throws Exception {
+		blackhole.consume(Utils.createJSONArray(maps));
+	}
+
+}
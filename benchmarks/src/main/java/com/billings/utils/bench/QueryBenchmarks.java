@@ -0,0 +1,76 @@
+package com.billings.utils.bench;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.billings.utils.ResultRow;
+import com.billings.utils.SQLStatementUtils;
+
+//executeQuery into beans goes through getObjectDataList, into maps through getMapDataList
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class QueryBenchmarks {
+
+	@Param({ "1", "100", "1000" })
+	public int rows;
+
+	@Setup
+	public void setUp() {
+		BenchmarkDatabase.open();
+
+		SQLStatementUtils.executeBatchUpdate(BenchmarkDatabase.INSERT, BenchmarkDatabase.rows(1000, 0));
+
+		//SQLStatementUtils reports failures by returning null, which would otherwise be measured as a fast query
+		for (Class<?> type : new Class<?>[]{ InvoiceBean.class, HashMap.class, ResultRow.class }) {
+			List<?> result = SQLStatementUtils.executeQuery(BenchmarkDatabase.SELECT, type, rows);
+
+			if (result == null || result.size() != rows) {
+				throw new IllegalStateException("Expected " + rows + " rows of " + type.getSimpleName() + " but got " + result);
+			}
+		}
+	}
+
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkDatabase.close();
+	}
+
+
+	@Benchmark
+	public void getObjectDataList(Blackhole blackhole) {
+		blackhole.consume(SQLStatementUtils.executeQuery(BenchmarkDatabase.SELECT, InvoiceBean.class, rows));
+	}
+
+
+	@Benchmark
+	public void getMapDataListHashMap(Blackhole blackhole) {
+		blackhole.consume(SQLStatementUtils.executeQuery(BenchmarkDatabase.SELECT, HashMap.class, rows));
+	}
+
+
+	@Benchmark
+	public void getMapDataListResultRow(Blackhole blackhole) {
+		blackhole.consume(SQLStatementUtils.executeQuery(BenchmarkDatabase.SELECT, ResultRow.class, rows));
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.billings.utils.bench;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.billings.utils.Utils;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class UtilsBenchmarks {
+
+	//Inputs are fields rather than constants so the JIT cannot fold the conversions away
+	private Long longValue;
+	private String numericString;
+	private BigDecimal decimal;
+	private Timestamp timestamp;
+
+	private String cleanText;
+	private String dirtyText;
+
+	private InvoiceBean bean;
+	private Map<String, Object> map;
+
+	@Setup
+	public void setUp() {
+		longValue = 42L;
+		numericString = "12345";
+		decimal = new BigDecimal("1234.56");
+		timestamp = new Timestamp(1500000000000L);
+
+		cleanText = "Invoice 10442 for Northwind Traders, net 30 days, paid in full.";
+		dirtyText = "Invoice\t10442 for NØrthwind Traders,\r\nnet 30 days À paid\u0001 in full.";
+
+		bean = InvoiceBean.create(1);
+		map = bean.toMap();
+	}
+
+
+	@Benchmark
+	public void castLongToInteger(Blackhole blackhole) {
+		blackhole.consume(Utils.cast(longValue, Integer.class));
+	}
+
+
+	@Benchmark
+	public void castStringToInteger(Blackhole blackhole) {
+		blackhole.consume(Utils.cast(numericString, Integer.class));
+	}
+
+
+	@Benchmark
+	public void castBigDecimalToDouble(Blackhole blackhole) {
+		blackhole.consume(Utils.cast(decimal, Double.class));
+	}
+
+
+	@Benchmark
+	public void castTimestampToString(Blackhole blackhole) {
+		blackhole.consume(Utils.cast(timestamp, String.class));
+	}
+
+
+	@Benchmark
+	public void sanitizeCleanString(Blackhole blackhole) {
+		blackhole.consume(Utils.sanitizeString(cleanText));
+	}
+
+
+	@Benchmark
+	public void sanitizeDirtyString(Blackhole blackhole) {
+		blackhole.consume(Utils.sanitizeString(dirtyText));
+	}
+
+
+	@Benchmark
+	public void findMethodsForAttributes(Blackhole blackhole) throws Exception {
+		blackhole.consume(Utils.getMethodsForAttributes(InvoiceBean.class, InvoiceBean.ATTRIBUTES));
+	}
+
+
+	@Benchmark
+	public void createJSONFromBean(Blackhole blackhole) throws Exception {
+		blackhole.consume(Utils.createJSON(bean, InvoiceBean.ATTRIBUTES));
+	}
+
+
+	@Benchmark
+	public void createJSONFromMap(Blackhole blackhole) throws Exception {
+		blackhole.consume(Utils.createJSON(map));
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.billings.utils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+//Build stand-in for the host application's DatabaseUtils, only the signature the library compiles against.
+//Connects to the JDBC URL in the billings.db.url system property so the default pool works outside the host.
+public class DatabaseUtils {
+
+	public static Connection getConnection() throws Exception {
+		String url = System.getProperty("billings.db.url");
+
+		if (url == null) {
+			throw new SQLException("No host DatabaseUtils on the classpath, set billings.db.url or install a pool with ConnectionPool.setDefault");
+		}
+
+		return DriverManager.getConnection(url);
+	}
+
+}
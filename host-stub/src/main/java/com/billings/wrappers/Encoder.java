@@ -0,0 +1,8 @@
+package com.billings.wrappers;
+
+//Build stand-in for the host application's Encoder interface
+public interface Encoder {
+
+	String encode(byte[] bytes) throws Exception;
+
+}
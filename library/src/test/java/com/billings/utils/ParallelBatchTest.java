@@ -0,0 +1,115 @@
+package com.billings.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ParallelBatchTest {
+
+	private static final String URL = "jdbc:h2:mem:parallel_batch;DB_CLOSE_DELAY=-1";
+
+	private ConnectionPool pool;
+
+	@BeforeEach
+	public void setUp() {
+		pool = new ConnectionPool(() -> slowBatches(DriverManager.getConnection(URL)), 1, 8);
+		ConnectionPool.setDefault(pool);
+
+		SQLStatementUtils.executeUpdate("create table if not exists batch_row (id int)");
+		SQLStatementUtils.executeUpdate("truncate table batch_row");
+	}
+
+
+	@AfterEach
+	public void tearDown() {
+		Thread.interrupted();
+
+		ConnectionPool.setDefault(null);
+		pool.shutdown();
+	}
+
+
+	@Test
+	public void interruptedAllOrNothingBatchRollsBackEveryPartition() throws Exception {
+		Object[][] rows = new Object[40][];
+
+		for (int i=0; i<rows.length; i++) {
+			rows[i] = new Object[]{ i };
+		}
+
+		Thread caller = Thread.currentThread();
+
+		Thread interrupter = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			caller.interrupt();
+		});
+
+		interrupter.start();
+
+		BatchOptions options = new BatchOptions().setChunkSize(5).setPartitions(4).setAllOrNothing(true);
+
+		BatchResult result = SQLStatementUtils.executeParallelBatchUpdate("insert into batch_row (id) values (?)", options, rows);
+
+		interrupter.join();
+
+		assertTrue(Thread.interrupted(), "the caller's interrupt flag is kept");
+
+		assertTrue(result.isRolledBack());
+		assertTrue(result.hasFailures());
+		assertEquals(0, result.getCommittedRowCount());
+
+		for (int count : result.getUpdateCounts()) {
+			assertEquals(Statement.EXECUTE_FAILED, count);
+		}
+
+		assertEquals(0, pool.getActiveCount(), "every partition returned its connection");
+		assertEquals(0L, SQLStatementUtils.executeQueryForSingleCell("select count(*) from batch_row", Long.class));
+	}
+
+
+	//Each executeBatch takes long enough for the interrupt to land while the partitions are running
+	private static Connection slowBatches(Connection connection) {
+		return (Connection)Proxy.newProxyInstance(ParallelBatchTest.class.getClassLoader(), new Class<?>[]{ Connection.class }, (proxy, method, args) -> {
+			Object value = invoke(connection, method, args);
+
+			if (value instanceof PreparedStatement) {
+				PreparedStatement statement = (PreparedStatement)value;
+
+				return Proxy.newProxyInstance(ParallelBatchTest.class.getClassLoader(), new Class<?>[]{ PreparedStatement.class }, (ps, psMethod, psArgs) -> {
+					if (psMethod.getName().equals("executeBatch")) {
+						Thread.sleep(100);
+					}
+
+					return invoke(statement, psMethod, psArgs);
+				});
+			}
+
+			return value;
+		});
+	}
+
+
+	private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+}